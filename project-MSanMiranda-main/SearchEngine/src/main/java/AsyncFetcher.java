@@ -0,0 +1,217 @@
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Fetches HTML pages without blocking a thread for each request, so many more
+ * pages can be waited on at once than there are threads. Requests are sent by a
+ * {@link HttpClient} asynchronously, at most a fixed amount at a time, the
+ * others waiting in order until one completes.
+ *
+ * The handler of each page runs on a thread of the client once the page is
+ * read, so it should only hand the page to a {@link WorkQueue} instead of
+ * parsing it.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ *
+ * @see HtmlFetcher#fetch(URL, int)
+ */
+public class AsyncFetcher implements AutoCloseable {
+
+	/** A logger specifically for this class. */
+	private static final Logger log = LogManager.getLogger(AsyncFetcher.class);
+
+	/** Default amount of requests sent at once */
+	public static final int DEFAULT_IN_FLIGHT = 64;
+
+	/** The amount of requests sent at once */
+	private final int limit;
+
+	/** The client sending the requests */
+	private final HttpClient client;
+
+	/** The threads of the client, handling the responses */
+	private final ExecutorService executor;
+
+	/** The amount of requests sent and not completed */
+	private final AtomicInteger inFlight;
+
+	/** The requests waiting to be sent */
+	private final ConcurrentLinkedQueue<Request> waiting;
+
+	/** Basic constructor with no parameter */
+	public AsyncFetcher() {
+		this(DEFAULT_IN_FLIGHT);
+	}
+
+	/**
+	 * Constructor with the amount of requests sent at once.
+	 *
+	 * @param limit the amount of requests sent at once
+	 */
+	public AsyncFetcher(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Invalid in-flight limit: " + limit);
+		}
+		this.limit = limit;
+		this.inFlight = new AtomicInteger();
+		this.waiting = new ConcurrentLinkedQueue<Request>();
+		this.executor = Executors.newCachedThreadPool((runnable) -> {
+			Thread thread = new Thread(runnable, "async-fetcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NEVER).executor(executor).build();
+	}
+
+	/**
+	 * Fetches the resource at the URL, passing the HTML to the handler once read,
+	 * or {@code null} if unable to fetch the resource or the resource is not HTML
+	 * or not OK, like {@link HtmlFetcher#fetch(URL, int)} with 0 redirects. Returns
+	 * right away, the request being sent once fewer than the limit are in flight.
+	 *
+	 * @param url     the url to fetch
+	 * @param handler the handler of the HTML
+	 */
+	public void fetch(URL url, Consumer<String> handler) {
+		waiting.add(new Request(url, handler));
+		send();
+	}
+
+	/**
+	 * Sends waiting requests while fewer than the limit are in flight.
+	 */
+	private void send() {
+		while (!waiting.isEmpty()) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return;
+			}
+			if (!inFlight.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			Request request = waiting.poll();
+			if (request == null) {
+				inFlight.decrementAndGet();
+				/* Another thread took the last request, check again */
+				continue;
+			}
+			send(request);
+		}
+	}
+
+	/**
+	 * Sends a request, handing the HTML to its handler once read and sending the
+	 * next waiting request.
+	 *
+	 * @param request the request
+	 */
+	private void send(Request request) {
+		HttpRequest http;
+		try {
+			http = HttpRequest.newBuilder(request.url.toURI()).GET().build();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			log.debug("Invalid URL " + request.url);
+			handle(request, null);
+			inFlight.decrementAndGet();
+			return;
+		}
+
+		client.sendAsync(http, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+			String html = null;
+			if (error != null) {
+				log.debug("Unable to fetch " + request.url + ": " + error);
+			} else if (response.statusCode() / 100 == 2 && response.headers().firstValue("Content-Type")
+					.map((type) -> type.contains("text/html")).orElse(false)) {
+				html = response.body();
+			}
+			complete(request, html);
+		});
+	}
+
+	/**
+	 * Function to hand the HTML of a request to its handler, then let the next
+	 * waiting request be sent
+	 *
+	 * @param request the request
+	 * @param html    the HTML, or {@code null} if there is none
+	 */
+	private void complete(Request request, String html) {
+		handle(request, html);
+		inFlight.decrementAndGet();
+		send();
+	}
+
+	/**
+	 * Function to hand the HTML of a request to its handler
+	 *
+	 * @param request the request
+	 * @param html    the HTML, or {@code null} if there is none
+	 */
+	private static void handle(Request request, String html) {
+		try {
+			request.handler.accept(html);
+		} catch (RuntimeException e) {
+			log.debug("AsyncFetcher handler Exception!");
+		}
+	}
+
+	/**
+	 * Returns the amount of requests sent and not completed.
+	 *
+	 * @return the amount of requests in flight
+	 */
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Stops the threads of the client. Requests still in flight are not handled.
+	 */
+	@Override
+	public void close() {
+		waiting.clear();
+		executor.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncFetcher[inFlight=" + inFlight + "/" + limit + ", waiting=" + waiting.size() + "]";
+	}
+
+	/**
+	 * A page to fetch and the handler of its HTML.
+	 */
+	private static class Request {
+
+		/** The url to fetch */
+		private final URL url;
+
+		/** The handler of the HTML */
+		private final Consumer<String> handler;
+
+		/**
+		 * Constructor
+		 *
+		 * @param url     the url to fetch
+		 * @param handler the handler of the HTML
+		 */
+		public Request(URL url, Consumer<String> handler) {
+			this.url = url;
+			this.handler = handler;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A stemmer remembering the stems of the words it has seen. Most words in
+ * natural language text are a few thousand frequent words, so most of them are
+ * stemmed only once instead of every time they are found.
+ *
+ * Every thread gets its own instance from {@link #get()}, with its own
+ * {@link SnowballStemmer} and cache, since the snowball stemmer is not
+ * thread-safe. Each cache holds a bounded amount of words, evicting the least
+ * recently used words first, so frequent words stay cached however early they
+ * were seen. A stemmer is only held weakly for its counters, so the stemmer and
+ * cache of a thread that is done can be collected, its counters being kept.
+ *
+ * Warning: An instance is not thread-safe, it must only be used by the thread
+ * it was handed to.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class CachingStemmer implements Stemmer {
+
+	/** The default maximum amount of words cached per thread */
+	public static final int DEFAULT_CAPACITY = 16_384;
+
+	/** A weak reference to every stemmer handed to a thread and not collected yet */
+	private static final Set<Tracked> TRACKED = ConcurrentHashMap.newKeySet();
+
+	/** The references of the stemmers collected */
+	private static final ReferenceQueue<CachingStemmer> COLLECTED = new ReferenceQueue<CachingStemmer>();
+
+	/** The hits of the stemmers collected */
+	private static final AtomicLong COLLECTED_HITS = new AtomicLong();
+
+	/** The misses of the stemmers collected */
+	private static final AtomicLong COLLECTED_MISSES = new AtomicLong();
+
+	/** The amount of stemmers collected */
+	private static final AtomicLong COLLECTED_THREADS = new AtomicLong();
+
+	/** The stemmer of each thread */
+	private static final ThreadLocal<CachingStemmer> STEMMERS = ThreadLocal.withInitial(() -> {
+		collect();
+		CachingStemmer stemmer = new CachingStemmer(DEFAULT_CAPACITY);
+		TRACKED.add(new Tracked(stemmer));
+		return stemmer;
+	});
+
+	/** The stemmer used for words not cached */
+	private final SnowballStemmer stemmer;
+
+	/** The stems of the cached words, least recently used first */
+	private final LinkedHashMap<Word, String> stems;
+
+	/** The word looked up, reused for every lookup */
+	private final Word probe;
+
+	/** The number of words found in the cache and stemmed */
+	private final Counters counters;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity the maximum amount of words cached
+	 */
+	public CachingStemmer(int capacity) {
+		this.stemmer = new SnowballStemmer(TextFileStemmer.DEFAULT);
+		this.stems = new LinkedHashMap<Word, String>(capacity * 4 / 3 + 1, 0.75f, true) {
+			/** Unique version identifier, the map is never serialized */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Word, String> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.probe = new Word();
+		this.counters = new Counters();
+	}
+
+	/**
+	 * Returns the stemmer of the current thread.
+	 *
+	 * @return the stemmer of the current thread
+	 */
+	public static CachingStemmer get() {
+		return STEMMERS.get();
+	}
+
+	/**
+	 * Returns the stem of a word.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	public String stem(String word) {
+		return stem((CharSequence) word).toString();
+	}
+
+	/**
+	 * Returns the stem of a word. A word from {@link TextTokenizer#token()} is
+	 * looked up without making a string of it first, which is only done if it is
+	 * not cached.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	@Override
+	public CharSequence stem(CharSequence word) {
+		String stem = stems.get(probe.set(word));
+		probe.set(null);
+		if (stem != null) {
+			counters.hits++;
+			return stem;
+		}
+
+		counters.misses++;
+		String text = word.toString();
+		stem = stemmer.stem(text).toString();
+		stems.put(new Word().set(text), stem);
+		return stem;
+	}
+
+	/**
+	 * Returns the number of words found in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return counters.hits;
+	}
+
+	/**
+	 * Returns the number of words stemmed.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return counters.misses;
+	}
+
+	/**
+	 * Returns the counters of every stemmer handed to a thread. Only exact once
+	 * the threads using them are done.
+	 *
+	 * @return the counters of every stemmer
+	 */
+	public static String summary() {
+		collect();
+		long hits = COLLECTED_HITS.get();
+		long misses = COLLECTED_MISSES.get();
+		long threads = COLLECTED_THREADS.get();
+		for (Tracked tracked : TRACKED) {
+			hits += tracked.counters.hits;
+			misses += tracked.counters.misses;
+			threads++;
+		}
+		long words = hits + misses;
+		return String.format("Stems: %d words, %d stemmed (%.1f%% hit rate), %d threads", words, misses,
+				words == 0 ? 0.0 : 100.0 * hits / words, threads);
+	}
+
+	/**
+	 * Function to keep the counters of the stemmers collected, forgetting their
+	 * references
+	 */
+	private static void collect() {
+		Tracked tracked;
+		while ((tracked = (Tracked) COLLECTED.poll()) != null) {
+			if (TRACKED.remove(tracked)) {
+				COLLECTED_HITS.addAndGet(tracked.counters.hits);
+				COLLECTED_MISSES.addAndGet(tracked.counters.misses);
+				COLLECTED_THREADS.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Stems: %d hits, %d misses, %d cached", counters.hits, counters.misses, stems.size());
+	}
+
+	/**
+	 * The counters of a stemmer, kept apart from it so they outlive it.
+	 */
+	private static class Counters {
+
+		/** The number of words found in the cache */
+		private long hits;
+
+		/** The number of words stemmed */
+		private long misses;
+	}
+
+	/**
+	 * A weak reference to a stemmer, holding its counters.
+	 */
+	private static class Tracked extends WeakReference<CachingStemmer> {
+
+		/** The counters of the stemmer */
+		private final Counters counters;
+
+		/**
+		 * Constructor
+		 *
+		 * @param stemmer the stemmer
+		 */
+		public Tracked(CachingStemmer stemmer) {
+			super(stemmer, COLLECTED);
+			this.counters = stemmer.counters;
+		}
+	}
+
+	/**
+	 * A cached word, equal to any other with the same characters. The same one is
+	 * reused to look up every word, so a word from {@link TextTokenizer#token()}
+	 * does not need to be a string to be looked up.
+	 */
+	private static class Word {
+
+		/** The characters of the word */
+		private CharSequence chars;
+
+		/** The hash code of the characters, the same as the equal string */
+		private int hash;
+
+		/**
+		 * Sets the characters of the word.
+		 *
+		 * @param chars the characters, or {@code null} to forget them
+		 * @return this word
+		 */
+		public Word set(CharSequence chars) {
+			this.chars = chars;
+			int hash = 0;
+			if (chars != null) {
+				for (int i = 0; i < chars.length(); i++) {
+					hash = 31 * hash + chars.charAt(i);
+				}
+			}
+			this.hash = hash;
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Word && hash == ((Word) o).hash && CharSequence.compare(chars, ((Word) o).chars) == 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(chars);
+		}
+	}
+}
@@ -0,0 +1,687 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An InvertedIndex storage engine that interns words and locations to int ids
+ * and keeps the positions of a word at a location as a sorted int array,
+ * instead of boxing every position as an Integer inside a TreeSet.
+ *
+ * Answers the same questions with the same results as {@link InvertedIndex};
+ * the sets returned by the getter-like functions are built on demand.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class CompactInvertedIndex extends InvertedIndex {
+
+	/** Data Structure to hold Word to word id, sorted for partial search */
+	private TermDictionary words;
+
+	/** The postings of every word, by word id */
+	private final ArrayList<Postings> postings;
+
+	/** Data Structure to hold Location to location id */
+	private final HashMap<String, Integer> locationIds;
+
+	/** The locations, by location id */
+	private final ArrayList<String> locations;
+
+	/** The word count of every location, by location id */
+	private int[] counts;
+
+	/** Basic constructor with no parameter */
+	public CompactInvertedIndex() {
+		super();
+		this.words = new TermDictionary();
+		this.postings = new ArrayList<Postings>();
+		this.locationIds = new HashMap<String, Integer>();
+		this.locations = new ArrayList<String>();
+		this.counts = new int[16];
+	}
+
+	/* Contains Function */
+
+	@Override
+	public boolean containsWord(String word) {
+		return words.contains(word);
+	}
+
+	@Override
+	public boolean containsLocationCount(String location) {
+		return locationIds.containsKey(location);
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		Postings list = postingsOf(word);
+		Integer id = locationIds.get(location);
+		return list != null && id != null && list.find(id) >= 0;
+	}
+
+	@Override
+	public boolean containsIndex(String word, String location, Integer index) {
+		Postings list = postingsOf(word);
+		Integer id = locationIds.get(location);
+		if (list == null || id == null || index == null) {
+			return false;
+		}
+		int i = list.find(id);
+		return i >= 0 && Arrays.binarySearch(list.positions[i], 0, list.lengths[i], index) >= 0;
+	}
+
+	/* Size-like functions */
+
+	@Override
+	public int inWordLocations(String word) {
+		Postings list = postingsOf(word);
+		return list == null ? 0 : list.size;
+	}
+
+	@Override
+	public int inWordIndexes(String word) {
+		Postings list = postingsOf(word);
+		int total = 0;
+		if (list != null) {
+			for (int i = 0; i < list.size; i++) {
+				total += list.lengths[i];
+			}
+		}
+		return total;
+	}
+
+	@Override
+	public int inWordinLocationIndexes(String word, String location) {
+		Postings list = postingsOf(word);
+		Integer id = locationIds.get(location);
+		if (list == null || id == null) {
+			return 0;
+		}
+		int i = list.find(id);
+		return i < 0 ? 0 : list.lengths[i];
+	}
+
+	@Override
+	public int uniqueWords() {
+		return words.size();
+	}
+
+	/* Getter-Like Functions */
+
+	@Override
+	public Set<String> getWordSet() {
+		return words.keySet();
+	}
+
+	@Override
+	public Set<String> getLocationSet(String word) {
+		Postings list = postingsOf(word);
+		if (list == null) {
+			return null;
+		}
+		TreeSet<String> set = new TreeSet<String>();
+		for (int i = 0; i < list.size; i++) {
+			set.add(locations.get(list.docs[i]));
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<Integer> getIndexSet(String word, String location) {
+		Postings list = postingsOf(word);
+		Integer id = locationIds.get(location);
+		if (list == null || id == null) {
+			return null;
+		}
+		int i = list.find(id);
+		if (i < 0) {
+			return null;
+		}
+		TreeSet<Integer> set = new TreeSet<Integer>();
+		for (int j = 0; j < list.lengths[i]; j++) {
+			set.add(list.positions[i][j]);
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<String> keySetCount() {
+		return Collections.unmodifiableSet(locationIds.keySet());
+	}
+
+	@Override
+	public Integer getCount(String location) {
+		return locationTotal(location);
+	}
+
+	/* Data-Adding Functions */
+
+	@Override
+	public void addIndex(String word, String location, Integer index) {
+		int locationId = locationId(location);
+		postings.get(wordId(word)).add(locationId, index);
+
+		if (counts[locationId] < index) {
+			counts[locationId] = index;
+		}
+		changed(word, location);
+	}
+
+	/**
+	 * Function to add every position of a word at a location at once
+	 *
+	 * @param word     the word to add
+	 * @param location the location where the word is found
+	 * @param indexes  the positions inside of location where the word is found
+	 */
+	public void addIndexes(String word, String location, Collection<Integer> indexes) {
+		int locationId = locationId(location);
+		postings.get(wordId(word)).addAll(locationId, indexes);
+
+		for (Integer index : indexes) {
+			if (counts[locationId] < index) {
+				counts[locationId] = index;
+			}
+		}
+		changed(word, location);
+	}
+
+	/**
+	 * Function to record every word of a document at once, the first word at
+	 * position 1. The word id and position of every word are packed into a long
+	 * and sorted, so the positions of each word end up in a run and are copied
+	 * into its postings list at once, without boxing.
+	 *
+	 * @param location the location of the document
+	 * @param words    the words of the document, in order
+	 */
+	@Override
+	public void addDocument(String location, List<String> words) {
+		if (words.isEmpty()) {
+			return;
+		}
+
+		long[] packed = new long[words.size()];
+		int index = 0;
+		for (String word : words) {
+			packed[index] = (long) wordId(word) << 32 | (index + 1);
+			index++;
+		}
+		Arrays.sort(packed);
+
+		int locationId = locationId(location);
+		int[] run = new int[packed.length];
+		for (int i = 0; i < packed.length;) {
+			int wordId = (int) (packed[i] >>> 32);
+			int length = 0;
+			for (; i < packed.length && (int) (packed[i] >>> 32) == wordId; i++) {
+				run[length++] = (int) packed[i];
+			}
+			postings.get(wordId).addAll(locationId, run, length);
+		}
+
+		if (counts[locationId] < words.size()) {
+			counts[locationId] = words.size();
+		}
+		changed(words, location);
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		if (other instanceof CompactInvertedIndex) {
+			addAll((CompactInvertedIndex) other);
+			return;
+		}
+
+		for (String word : other.getWordSet()) {
+			for (String location : other.getLocationSet(word)) {
+				for (Integer index : other.getIndexSet(word, location)) {
+					addIndex(word, location, index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A function to combine 2 CompactInvertedIndex data, translating the ids of
+	 * the other index instead of going through its getter-like functions
+	 *
+	 * @param other another CompactInvertedIndex
+	 */
+	private void addAll(CompactInvertedIndex other) {
+		int[] translate = new int[other.locations.size()];
+		for (int i = 0; i < translate.length; i++) {
+			if (!other.isLocation(i)) {
+				continue;
+			}
+			translate[i] = locationId(other.locations.get(i));
+			if (counts[translate[i]] < other.counts[i]) {
+				counts[translate[i]] = other.counts[i];
+			}
+		}
+
+		other.words.forEach((word, id) -> {
+			Postings from = other.postings.get(id);
+			Postings to = postings.get(wordId(word));
+			for (int i = 0; i < from.size; i++) {
+				for (int j = 0; j < from.lengths[i]; j++) {
+					to.add(translate[from.docs[i]], from.positions[i][j]);
+				}
+			}
+		});
+		changed(other);
+	}
+
+	/* Data-Removing Functions */
+
+	/**
+	 * Removes the location id from every postings list. The location keeps its id
+	 * unused, and the word dictionary is rebuilt if words are left without any
+	 * location, since the dictionary cannot remove words.
+	 */
+	@Override
+	public boolean removeLocation(String location) {
+		Integer id = locationIds.remove(location);
+		if (id == null) {
+			return false;
+		}
+		counts[id] = 0;
+
+		boolean emptied = false;
+		for (Postings list : postings) {
+			if (list.remove(id) && list.size == 0) {
+				emptied = true;
+			}
+		}
+		if (emptied) {
+			TermDictionary kept = new TermDictionary();
+			ArrayList<Postings> lists = new ArrayList<Postings>();
+			words.forEach((word, wordId) -> {
+				Postings list = postings.get(wordId);
+				if (list.size > 0) {
+					kept.put(word, lists.size());
+					lists.add(list);
+				}
+			});
+			words = kept;
+			postings.clear();
+			postings.addAll(lists);
+		}
+		changed(List.of(), location);
+		return true;
+	}
+
+	/* JSon - String Function */
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.doubleNestedArray(words.keySet(), this::postingsMap, writer, 0);
+		}
+	}
+
+	@Override
+	public void toCountJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.asObject(countMap(), writer, 0);
+		}
+	}
+
+	@Override
+	protected void writeJson(StreamingJsonWriter writer) throws IOException {
+		// location ids follow the order locations were added, not their names
+		Integer[] sorted = new Integer[locations.size()];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (a, b) -> locations.get(a).compareTo(locations.get(b)));
+		long[] rank = new long[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			rank[sorted[i]] = i;
+		}
+
+		long[] order = new long[16];
+		for (String word : words.keySet()) {
+			writer.word(word);
+			Postings list = postingsOf(word);
+			if (order.length < list.size) {
+				order = new long[Math.max(list.size, order.length * 2)];
+			}
+			for (int i = 0; i < list.size; i++) {
+				order[i] = rank[list.docs[i]] << 32 | i;
+			}
+			Arrays.sort(order, 0, list.size);
+			for (int j = 0; j < list.size; j++) {
+				int i = (int) order[j];
+				writer.location(locations.get(list.docs[i]), list.positions[i], list.lengths[i]);
+			}
+		}
+	}
+
+	@Override
+	protected void writeCountJson(StreamingJsonWriter writer) throws IOException {
+		writer.counts(countMap());
+	}
+
+	@Override
+	protected InvertedIndex snapshot() {
+		CompactInvertedIndex copy = new CompactInvertedIndex();
+		copy.addAll(this);
+		return copy;
+	}
+
+	/* Storage Functions used by search */
+
+	@Override
+	protected Collection<String> matchingWords(String query, boolean exact) {
+		if (exact) {
+			return words.contains(query) ? Set.of(query) : Set.of();
+		}
+		List<String> matches = new ArrayList<String>();
+		words.forEachPrefix(query, (word, id) -> matches.add(word));
+		return matches;
+	}
+
+	@Override
+	protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+		Postings list = postingsOf(word);
+		for (int i = 0; i < list.size; i++) {
+			action.accept(locations.get(list.docs[i]), list.lengths[i]);
+		}
+	}
+
+	@Override
+	protected int locationTotal(String location) {
+		Integer id = locationIds.get(location);
+		return id == null ? 0 : counts[id];
+	}
+
+	/**
+	 * Function to return the postings of a word, or null if the word is not found
+	 *
+	 * @param word the word to check
+	 * @return the postings of the word
+	 */
+	private Postings postingsOf(String word) {
+		int id = words.get(word);
+		return id < 0 ? null : postings.get(id);
+	}
+
+	/**
+	 * Function to return the id of a word, adding the word if it has not been
+	 * seen before
+	 *
+	 * @param word the word to look up
+	 * @return the id of the word
+	 */
+	private int wordId(String word) {
+		int id = words.get(word);
+		if (id < 0) {
+			id = postings.size();
+			words.put(word, id);
+			postings.add(new Postings());
+		}
+		return id;
+	}
+
+	/**
+	 * Function to return the id of a location, adding the location if it has not
+	 * been seen before
+	 *
+	 * @param location the location to look up
+	 * @return the id of the location
+	 */
+	private int locationId(String location) {
+		Integer id = locationIds.get(location);
+		if (id == null) {
+			id = locations.size();
+			locationIds.put(location, id);
+			locations.add(location);
+			if (id == counts.length) {
+				counts = Arrays.copyOf(counts, id * 2);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Function to build the sorted map of locations to word counts
+	 *
+	 * @return a sorted map of locations to word counts
+	 */
+	private TreeMap<String, Integer> countMap() {
+		TreeMap<String, Integer> countMap = new TreeMap<String, Integer>();
+		for (int i = 0; i < locations.size(); i++) {
+			if (isLocation(i)) {
+				countMap.put(locations.get(i), counts[i]);
+			}
+		}
+		return countMap;
+	}
+
+	/**
+	 * Function to check if a location id is still used, and not left behind by a
+	 * removed location
+	 *
+	 * @param id the location id
+	 * @return true if the location of the id is in the index
+	 */
+	private boolean isLocation(int id) {
+		Integer current = locationIds.get(locations.get(id));
+		return current != null && current == id;
+	}
+
+	/**
+	 * Function to build the location to indexes map of a single word, in the same
+	 * layout {@link InvertedIndex} keeps it
+	 *
+	 * @param word the word to build the map for
+	 * @return a sorted map of locations to sorted indexes
+	 */
+	private TreeMap<String, TreeSet<Integer>> postingsMap(String word) {
+		TreeMap<String, TreeSet<Integer>> map = new TreeMap<String, TreeSet<Integer>>();
+		Postings list = postingsOf(word);
+		for (int i = 0; i < list.size; i++) {
+			TreeSet<Integer> indexes = new TreeSet<Integer>();
+			for (int j = 0; j < list.lengths[i]; j++) {
+				indexes.add(list.positions[i][j]);
+			}
+			map.put(locations.get(list.docs[i]), indexes);
+		}
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		for (String word : words.keySet()) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(word).append('=').append(postingsMap(word));
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * The locations and positions of a single word. Location ids are kept sorted
+	 * in {@link #docs}, and the positions at the location stored in the same slot
+	 * of {@link #positions} are kept sorted without duplicates.
+	 */
+	private static class Postings {
+
+		/** The location ids, sorted */
+		private int[] docs;
+
+		/** The positions at each location, sorted */
+		private int[][] positions;
+
+		/** The amount of positions used in each array of positions */
+		private int[] lengths;
+
+		/** The amount of locations used in docs */
+		private int size;
+
+		/** Constructor for an empty postings list */
+		public Postings() {
+			this.docs = new int[1];
+			this.positions = new int[1][];
+			this.lengths = new int[1];
+			this.size = 0;
+		}
+
+		/**
+		 * Function to find the slot of a location id
+		 *
+		 * @param doc the location id to find
+		 * @return the slot of the location id, or a negative value as returned by
+		 *         {@link Arrays#binarySearch(int[], int, int, int)} if not found
+		 */
+		public int find(int doc) {
+			if (size > 0 && docs[size - 1] == doc) {
+				return size - 1;
+			}
+			return Arrays.binarySearch(docs, 0, size, doc);
+		}
+
+		/**
+		 * Function to record a position of the word at a location id. Positions
+		 * usually arrive in increasing order, which only appends.
+		 *
+		 * @param doc   the location id
+		 * @param index the position inside of the location
+		 */
+		public void add(int doc, int index) {
+			int i = slot(doc);
+			int[] array = positions[i];
+			int length = lengths[i];
+			int j = length > 0 && array[length - 1] < index ? -(length + 1)
+					: Arrays.binarySearch(array, 0, length, index);
+			if (j >= 0) {
+				return;
+			}
+			j = -(j + 1);
+
+			if (length == array.length) {
+				array = Arrays.copyOf(array, length * 2);
+				positions[i] = array;
+			}
+			System.arraycopy(array, j, array, j + 1, length - j);
+			array[j] = index;
+			lengths[i] = length + 1;
+		}
+
+		/**
+		 * Function to record many positions of the word at a location id at once.
+		 * Positions for a location id not seen before are copied into a single
+		 * array instead of being added one at a time.
+		 *
+		 * @param doc     the location id
+		 * @param indexes the positions inside of the location
+		 */
+		public void addAll(int doc, Collection<Integer> indexes) {
+			int i = slot(doc);
+			if (lengths[i] > 0) {
+				for (Integer index : indexes) {
+					add(doc, index);
+				}
+				return;
+			}
+
+			int[] array = new int[Math.max(1, indexes.size())];
+			int length = 0;
+			for (Integer index : indexes) {
+				array[length++] = index;
+			}
+			Arrays.sort(array, 0, length);
+			int unique = Math.min(length, 1);
+			for (int j = 1; j < length; j++) {
+				if (array[j] != array[unique - 1]) {
+					array[unique++] = array[j];
+				}
+			}
+			positions[i] = array;
+			lengths[i] = unique;
+		}
+
+		/**
+		 * Function to record many sorted positions of the word at a location id at
+		 * once, copying them into a single array for a location id not seen before
+		 *
+		 * @param doc     the location id
+		 * @param indexes the positions inside of the location, sorted and unique
+		 * @param length  the amount of positions used in indexes
+		 */
+		public void addAll(int doc, int[] indexes, int length) {
+			int i = slot(doc);
+			if (lengths[i] > 0) {
+				for (int j = 0; j < length; j++) {
+					add(doc, indexes[j]);
+				}
+				return;
+			}
+			positions[i] = Arrays.copyOf(indexes, Math.max(1, length));
+			lengths[i] = length;
+		}
+
+		/**
+		 * Function to remove a location id and its positions
+		 *
+		 * @param doc the location id
+		 * @return true if the location id was found
+		 */
+		public boolean remove(int doc) {
+			int i = find(doc);
+			if (i < 0) {
+				return false;
+			}
+			size--;
+			System.arraycopy(docs, i + 1, docs, i, size - i);
+			System.arraycopy(positions, i + 1, positions, i, size - i);
+			System.arraycopy(lengths, i + 1, lengths, i, size - i);
+			positions[size] = null;
+			return true;
+		}
+
+		/**
+		 * Function to find the slot of a location id, adding an empty slot if the
+		 * location id is not found
+		 *
+		 * @param doc the location id
+		 * @return the slot of the location id
+		 */
+		private int slot(int doc) {
+			int i = find(doc);
+			if (i < 0) {
+				i = -(i + 1);
+				if (size == docs.length) {
+					int capacity = size * 2;
+					docs = Arrays.copyOf(docs, capacity);
+					positions = Arrays.copyOf(positions, capacity);
+					lengths = Arrays.copyOf(lengths, capacity);
+				}
+				System.arraycopy(docs, i, docs, i + 1, size - i);
+				System.arraycopy(positions, i, positions, i + 1, size - i);
+				System.arraycopy(lengths, i, lengths, i + 1, size - i);
+				docs[i] = doc;
+				positions[i] = new int[1];
+				lengths[i] = 0;
+				size++;
+			}
+			return i;
+		}
+	}
+}
@@ -0,0 +1,350 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A thread-safe InvertedIndex built on concurrent skip lists instead of a
+ * single read/write lock. Many writers can merge their local indexes at the
+ * same time and readers never block, at the cost of a weakly consistent view:
+ * a search running during an addAll may see only part of the merged data.
+ *
+ * The indexes of a word at a location are a plain TreeSet synchronized on
+ * itself, so only writers adding to the very same word and location contend.
+ * Writers also synchronize on the locations of the word they add to, so
+ * {@link #removeLocation(String)} can drop the word once it has no locations
+ * left without losing a concurrent add. The count of a location is added before
+ * its words, so a search never finds a location without its count.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class ConcurrentInvertedIndex extends InvertedIndex {
+
+	/** Data Structure to hold Word to Path and Integer */
+	private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, TreeSet<Integer>>> map;
+
+	/** Data Structure to hold individual counts */
+	private final ConcurrentSkipListMap<String, Integer> countMap;
+
+	/** Basic constructor with no parameter */
+	public ConcurrentInvertedIndex() {
+		super();
+		this.map = new ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, TreeSet<Integer>>>();
+		this.countMap = new ConcurrentSkipListMap<String, Integer>();
+	}
+
+	/* Contains Function */
+
+	@Override
+	public boolean containsWord(String word) {
+		return map.containsKey(word);
+	}
+
+	@Override
+	public boolean containsLocationCount(String location) {
+		return countMap.containsKey(location);
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		var locations = map.get(word);
+		return locations != null && locations.containsKey(location);
+	}
+
+	@Override
+	public boolean containsIndex(String word, String location, Integer index) {
+		var indexes = indexes(word, location);
+		if (indexes == null) {
+			return false;
+		}
+		synchronized (indexes) {
+			return indexes.contains(index);
+		}
+	}
+
+	/* Size-like functions */
+
+	@Override
+	public int inWordLocations(String word) {
+		var locations = map.get(word);
+		return locations == null ? 0 : locations.size();
+	}
+
+	@Override
+	public int inWordIndexes(String word) {
+		var locations = map.get(word);
+		int i = 0;
+		if (locations != null) {
+			for (var indexes : locations.values()) {
+				synchronized (indexes) {
+					i += indexes.size();
+				}
+			}
+		}
+		return i;
+	}
+
+	@Override
+	public int inWordinLocationIndexes(String word, String location) {
+		var indexes = indexes(word, location);
+		if (indexes == null) {
+			return 0;
+		}
+		synchronized (indexes) {
+			return indexes.size();
+		}
+	}
+
+	@Override
+	public int uniqueWords() {
+		return map.size();
+	}
+
+	/* Getter-Like Functions */
+
+	@Override
+	public Set<String> getWordSet() {
+		return Collections.unmodifiableSet(map.keySet());
+	}
+
+	@Override
+	public Set<String> getLocationSet(String word) {
+		var locations = map.get(word);
+		return locations == null ? null : Collections.unmodifiableSet(locations.keySet());
+	}
+
+	@Override
+	public Set<Integer> getIndexSet(String word, String location) {
+		var indexes = indexes(word, location);
+		if (indexes == null) {
+			return null;
+		}
+		synchronized (indexes) {
+			return Collections.unmodifiableSet(new TreeSet<Integer>(indexes));
+		}
+	}
+
+	@Override
+	public Set<String> keySetCount() {
+		return Collections.unmodifiableSet(countMap.keySet());
+	}
+
+	@Override
+	public Integer getCount(String location) {
+		return countMap.getOrDefault(location, 0);
+	}
+
+	/* Data-Adding Functions */
+
+	@Override
+	public void addIndex(String word, String location, Integer index) {
+		countMap.merge(location, index, Math::max);
+		addTo(word, (locations) -> {
+			var indexes = locations.computeIfAbsent(location, key -> new TreeSet<Integer>());
+			synchronized (indexes) {
+				indexes.add(index);
+			}
+		});
+		changed(word, location);
+	}
+
+	@Override
+	public void addDocument(String location, List<String> words) {
+		if (words.isEmpty()) {
+			return;
+		}
+
+		countMap.merge(location, words.size(), Math::max);
+		for (var entry : positions(words).entrySet()) {
+			addTo(entry.getKey(), (locations) -> {
+				var indexes = locations.putIfAbsent(location, entry.getValue());
+				if (indexes != null) {
+					synchronized (indexes) {
+						indexes.addAll(entry.getValue());
+					}
+				}
+			});
+		}
+		changed(words, location);
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		for (String location : other.keySetCount()) {
+			countMap.merge(location, other.getCount(location), Math::max);
+		}
+		for (String word : other.getWordSet()) {
+			addTo(word, (to) -> {
+				for (String location : other.getLocationSet(word)) {
+					var indexes = to.computeIfAbsent(location, key -> new TreeSet<Integer>());
+					synchronized (indexes) {
+						indexes.addAll(other.getIndexSet(word, location));
+					}
+				}
+			});
+		}
+		changed(other);
+	}
+
+	/**
+	 * Removes the location word by word, so a search running meanwhile may see
+	 * only some of its words removed.
+	 */
+	@Override
+	public boolean removeLocation(String location) {
+		boolean found = countMap.remove(location) != null;
+		for (var entry : map.entrySet()) {
+			var locations = entry.getValue();
+			synchronized (locations) {
+				if (locations.remove(location) != null) {
+					found = true;
+					/* Dropped while no writer can be adding to it, see addTo */
+					if (locations.isEmpty()) {
+						map.remove(entry.getKey(), locations);
+					}
+				}
+			}
+		}
+		if (found) {
+			changed(List.of(), location);
+		}
+		return found;
+	}
+
+	/* JSon - String Function */
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.doubleNestedArray(map.keySet(), this::snapshot, writer, 0);
+		}
+	}
+
+	@Override
+	public void toCountJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.asObject(countMap, writer, 0);
+		}
+	}
+
+	@Override
+	protected void writeJson(StreamingJsonWriter writer) throws IOException {
+		for (var entry : map.entrySet()) {
+			writer.word(entry.getKey());
+			for (var location : entry.getValue().entrySet()) {
+				var indexes = location.getValue();
+				synchronized (indexes) {
+					writer.location(location.getKey(), indexes);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void writeCountJson(StreamingJsonWriter writer) throws IOException {
+		writer.counts(countMap);
+	}
+
+	/* Storage Functions used by search */
+
+	@Override
+	protected Collection<String> matchingWords(String query, boolean exact) {
+		if (exact) {
+			return map.containsKey(query) ? Set.of(query) : Set.of();
+		}
+		return map.subMap(query, true, query + Character.MAX_VALUE, false).keySet();
+	}
+
+	@Override
+	protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+		var locations = map.get(word);
+		if (locations != null) {
+			for (var entry : locations.entrySet()) {
+				var indexes = entry.getValue();
+				int size;
+				synchronized (indexes) {
+					size = indexes.size();
+				}
+				action.accept(entry.getKey(), size);
+			}
+		}
+	}
+
+	@Override
+	protected int locationTotal(String location) {
+		return countMap.getOrDefault(location, 0);
+	}
+
+	/**
+	 * Function to add to the locations of a word, adding the word if needed. The
+	 * locations are synchronized on and checked to still be in the index, since
+	 * {@link #removeLocation(String)} drops them once empty, and fetched again if
+	 * not.
+	 *
+	 * @param word   the word to add to
+	 * @param action the adding to the locations of the word
+	 */
+	private void addTo(String word, Consumer<ConcurrentSkipListMap<String, TreeSet<Integer>>> action) {
+		while (true) {
+			var locations = map.computeIfAbsent(word, key -> new ConcurrentSkipListMap<String, TreeSet<Integer>>());
+			synchronized (locations) {
+				if (map.get(word) == locations) {
+					action.accept(locations);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Function to return the indexes of a word at a location, or null if not found
+	 *
+	 * @param word     the word to check
+	 * @param location the location to check
+	 * @return the indexes of the word at the location
+	 */
+	private TreeSet<Integer> indexes(String word, String location) {
+		var locations = map.get(word);
+		return locations == null ? null : locations.get(location);
+	}
+
+	/**
+	 * Function to copy the locations and indexes of a word, so they can be
+	 * iterated while other threads keep adding to them
+	 *
+	 * @param word the word to copy
+	 * @return a sorted map of locations to sorted indexes, empty if the word was
+	 *         removed meanwhile
+	 */
+	private TreeMap<String, TreeSet<Integer>> snapshot(String word) {
+		TreeMap<String, TreeSet<Integer>> copy = new TreeMap<String, TreeSet<Integer>>();
+		var locations = map.get(word);
+		if (locations == null) {
+			return copy;
+		}
+		for (var entry : locations.entrySet()) {
+			var indexes = entry.getValue();
+			synchronized (indexes) {
+				copy.put(entry.getKey(), new TreeSet<Integer>(indexes));
+			}
+		}
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+}
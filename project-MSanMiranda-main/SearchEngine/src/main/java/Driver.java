@@ -1,8 +1,10 @@
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,9 +31,10 @@ public class Driver {
 
 		ArgumentMap argMap = new ArgumentMap(args);
 		InvertedIndex library = null;
-		InvertedIndexMulti multiLibrary = null;
+		InvertedIndex multiLibrary = null;
 		QueryParserInterface query = null;
 		WorkQueue queue = null;
+		FairReadWriteLock lock = null;
 		int maxCrawls = 1;
 
 		if (argMap.hasFlag("-max")) {
@@ -49,6 +52,78 @@ public class Driver {
 			}
 		}
 
+		/* Keep only the best search items of every query */
+		int limit = 0;
+		if (argMap.hasFlag("-limit")) {
+			limit = argMap.getInteger("-limit", 0);
+			if (limit < 1) {
+				log.error("Invalid Limit: " + argMap.getString("-limit"));
+				return;
+			}
+		}
+
+		/* Split long prefix searches on a fork-join pool */
+		ForkJoinPool pool = null;
+		if (argMap.hasFlag("-parallel")) {
+			int parallelism = argMap.getInteger("-parallel", Runtime.getRuntime().availableProcessors());
+			if (parallelism < 1) {
+				log.error("Invalid Parallelism: " + argMap.getString("-parallel"));
+				return;
+			}
+			pool = new ForkJoinPool(parallelism);
+		}
+
+		/* Cache search results, bounded by the total amount of cached search items */
+		QueryCache cache = null;
+		if (argMap.hasFlag("-cache")) {
+			int capacity = argMap.getInteger("-cache", QueryCache.DEFAULT_CAPACITY);
+			if (capacity < 1) {
+				log.error("Invalid Cache: " + argMap.getString("-cache"));
+				return;
+			}
+			cache = new QueryCache(capacity);
+		}
+
+		/* Keep the index as immutable segments merged in the background */
+		int flushSize = 0;
+		if (argMap.hasFlag("-segments")) {
+			flushSize = argMap.getInteger("-segments", SegmentedInvertedIndex.DEFAULT_FLUSH);
+			if (flushSize < 1) {
+				log.error("Invalid Segments: " + argMap.getString("-segments"));
+				return;
+			}
+		}
+
+		/* Keep at most this many connections per host open between fetches */
+		if (argMap.hasFlag("-connections")) {
+			int connections = argMap.getInteger("-connections", HttpConnectionPool.DEFAULT_MAX_PER_HOST);
+			if (connections < 1) {
+				log.error("Invalid Connections: " + argMap.getString("-connections"));
+				return;
+			}
+			HtmlFetcher.setPool(new HttpConnectionPool(connections, HttpConnectionPool.DEFAULT_IDLE));
+		}
+
+		/* Fetch pages asynchronously, this many at once */
+		int inFlight = AsyncFetcher.DEFAULT_IN_FLIGHT;
+		if (argMap.hasFlag("-inflight")) {
+			inFlight = argMap.getInteger("-inflight", AsyncFetcher.DEFAULT_IN_FLIGHT);
+			if (inFlight < 1) {
+				log.error("Invalid In-Flight: " + argMap.getString("-inflight"));
+				return;
+			}
+		}
+
+		/* Clean and stem pages as they are read, at most this many bytes of each */
+		int pageLimit = HtmlFetcher.MAX_PAGE;
+		if (argMap.hasFlag("-stream")) {
+			pageLimit = argMap.getInteger("-stream", HtmlFetcher.MAX_PAGE);
+			if (pageLimit < 1) {
+				log.error("Invalid Stream: " + argMap.getString("-stream"));
+				return;
+			}
+		}
+
 		/* Enable MultiThreading */
 		if (argMap.hasFlag("-threads") || argMap.hasFlag("-url")) {
 			String threadArg = argMap.getString("-threads");
@@ -64,20 +139,116 @@ public class Driver {
 				log.error("Invalid Thread: " + threadArg);
 				return;
 			}
-			queue = new WorkQueue(threads);
-			multiLibrary = new InvertedIndexMulti();
+			WorkQueue.Backend backend = WorkQueue.Backend.QUEUE;
+			if (argMap.hasFlag("-executor")) {
+				String executorArg = argMap.getString("-executor");
+				if ("forkjoin".equals(executorArg)) {
+					backend = WorkQueue.Backend.FORK_JOIN;
+				} else if (!"queue".equals(executorArg)) {
+					log.error("Invalid Executor: " + executorArg);
+					return;
+				}
+			}
+			int capacity = 0;
+			if (argMap.hasFlag("-capacity")) {
+				capacity = argMap.getInteger("-capacity", 0);
+				if (capacity < 1) {
+					log.error("Invalid Capacity: " + argMap.getString("-capacity"));
+					return;
+				}
+			}
+			queue = new WorkQueue(threads, backend, capacity);
+			/* Lets workers merge and search without the single read/write lock */
+			if (flushSize > 0) {
+				multiLibrary = new SegmentedInvertedIndex(flushSize);
+			} else if (argMap.hasFlag("-concurrent")) {
+				multiLibrary = new ConcurrentInvertedIndex();
+			} else if (argMap.hasFlag("-lock")) {
+				/* Writer-preferring lock, reentrant if asked, with contention counters */
+				lock = new FairReadWriteLock("reentrant".equals(argMap.getString("-lock")));
+				multiLibrary = new InvertedIndexMulti(lock);
+			} else {
+				multiLibrary = new InvertedIndexMulti();
+			}
 			library = multiLibrary;
-			query = new QueryParserMulti(multiLibrary, queue);
+			query = new QueryParserMulti(multiLibrary, queue, limit, pool);
 		} else {
-			library = new InvertedIndex();
-			query = new QueryParser(library);
+			/* Interns words and locations instead of boxing every position */
+			if (flushSize > 0) {
+				library = new SegmentedInvertedIndex(flushSize);
+			} else {
+				library = argMap.hasFlag("-compact") ? new CompactInvertedIndex() : new InvertedIndex();
+			}
+			query = new QueryParser(library, limit, pool);
+		}
+
+		/* Open a saved binary index instead of building one */
+		if (argMap.hasFlag("-load") && argMap.getString("-load") != null) {
+			Path currentReadPath = Paths.get(argMap.getString("-load"));
+			try {
+				library = new MappedInvertedIndex(currentReadPath);
+			} catch (Exception e) {
+				System.out.println("-load Unable to open the binary index at " + currentReadPath);
+				return;
+			}
+			/* New inputs go to segments on top of the saved index, which is never changed */
+			if (argMap.hasFlag("-path") || argMap.hasFlag("-url")) {
+				library = new SegmentedInvertedIndex(library,
+						flushSize > 0 ? flushSize : SegmentedInvertedIndex.DEFAULT_FLUSH);
+				if (multiLibrary != null) {
+					multiLibrary = library;
+				}
+			}
+			query = queue != null ? new QueryParserMulti(library, queue, limit, pool) : new QueryParser(library, limit, pool);
+		}
+
+		/* Only read the files changed since the index saved at this path was built */
+		Path incremental = null;
+		IndexMetadata metadata = null;
+		if (argMap.hasFlag("-incremental")) {
+			incremental = argMap.getPath("-incremental", Path.of("index.bin"));
+			if (argMap.hasFlag("-load")) {
+				log.error("Unable to use -load with -incremental");
+				return;
+			}
+			Path saved = Path.of(incremental + ".meta");
+			try {
+				if (!Files.exists(incremental) || !Files.exists(saved)) {
+					/* Neither file can be trusted without the other, so every file is read again */
+					log.info("Building " + incremental + " from scratch, missing the index or its metadata");
+					metadata = new IndexMetadata();
+				} else {
+					metadata = IndexMetadata.read(saved);
+					/* Changed files go to segments on top of the saved index, like -load with -path */
+					library = new SegmentedInvertedIndex(new MappedInvertedIndex(incremental),
+							flushSize > 0 ? flushSize : SegmentedInvertedIndex.DEFAULT_FLUSH);
+					if (multiLibrary != null) {
+						multiLibrary = library;
+					}
+					query = queue != null ? new QueryParserMulti(library, queue, limit, pool) : new QueryParser(library, limit, pool);
+				}
+			} catch (Exception e) {
+				System.out.println("-incremental Unable to open the binary index at " + incremental);
+				return;
+			}
+		}
+
+		if (cache != null) {
+			library.setCache(cache);
 		}
 
 		/* Build Inverted Index via Files */
 		if (argMap.hasFlag("-path") && argMap.getString("-path") != null) {
 			Path currentReadPath = Paths.get(argMap.getString("-path"));
 			try {
-				if (multiLibrary != null) {
+				if (metadata != null && multiLibrary != null) {
+					IndexFactoryMulti.update(currentReadPath, multiLibrary, metadata, queue);
+				} else if (metadata != null) {
+					IndexFactory.update(currentReadPath, library, metadata);
+				} else if (multiLibrary != null && argMap.hasFlag("-reduce")) {
+					/* Merge per-worker partial indexes in a tree instead of every file */
+					IndexFactoryMulti.buildReduced(currentReadPath, multiLibrary, queue);
+				} else if (multiLibrary != null) {
 					IndexFactoryMulti.build(currentReadPath, multiLibrary, queue);
 				} else {
 					IndexFactory.build(currentReadPath, library);
@@ -95,10 +266,53 @@ public class Driver {
 				log.debug("Converts URL");
 				seedURL = new URL(argMap.getString("-url"));
 				log.debug("Builds WebCrawler");
-				WebCrawler.build(seedURL, maxCrawls, multiLibrary, queue);
+				if (argMap.hasFlag("-inflight")) {
+					/* Wait on many pages at once, the work queue only parsing them */
+					try (AsyncFetcher fetcher = new AsyncFetcher(inFlight)) {
+						WebCrawler.crawl(seedURL, maxCrawls, multiLibrary, queue, fetcher);
+					}
+				} else if (argMap.hasFlag("-stream")) {
+					/* Never hold a whole page, only its anchor tags */
+					WebCrawler.stream(seedURL, maxCrawls, multiLibrary, queue, pageLimit);
+				} else if (argMap.hasFlag("-frontier")) {
+					/* Queue links as soon as found instead of level by level */
+					WebCrawler.crawl(seedURL, maxCrawls, multiLibrary, queue);
+				} else {
+					WebCrawler.build(seedURL, maxCrawls, multiLibrary, queue);
+				}
 			} catch (Exception e) {
 				System.out.println("-max Unable to read something given by URL " + seedURL);
 				return;
+			} finally {
+				HtmlFetcher.closePool();
+			}
+		}
+
+		/* Seal the last segment and wait for the background merges */
+		if (library instanceof SegmentedInvertedIndex) {
+			((SegmentedInvertedIndex) library).close();
+			log.info(library);
+		}
+
+		/* Replace the saved index and its metadata for the next incremental build */
+		if (incremental != null) {
+			try {
+				library.toBinary(incremental);
+				metadata.write(Path.of(incremental + ".meta"));
+			} catch (Exception e) {
+				System.out.println("Unable to write the InvertedIndex to binary file at " + incremental);
+				return;
+			}
+		}
+
+		/* Save the built index so it can be opened with -load */
+		if (argMap.hasFlag("-save") && argMap.getString("-save") != null) {
+			Path currentWritePath = Paths.get(argMap.getString("-save"));
+			try {
+				library.toBinary(currentWritePath);
+			} catch (Exception e) {
+				System.out.println("Unable to write the InvertedIndex to binary file at " + currentWritePath);
+				return;
 			}
 		}
 
@@ -113,11 +327,22 @@ public class Driver {
 			}
 		}
 
-		/* toJson Write functions */
+		/* toJson Write functions, pretty by default */
+		StreamingJsonWriter.Format format = StreamingJsonWriter.Format.PRETTY;
+		if (argMap.hasFlag("-json")) {
+			String formatArg = argMap.getString("-json");
+			try {
+				format = StreamingJsonWriter.Format.valueOf(formatArg.toUpperCase());
+			} catch (Exception e) {
+				log.error("Invalid Json Format: " + formatArg);
+				return;
+			}
+		}
+
 		if (argMap.hasFlag("-index")) {
 			Path currentWritePath = argMap.getPath("-index", Path.of("index.json"));
 			try {
-				library.toJson(currentWritePath);
+				library.toJson(currentWritePath, format);
 			} catch (Exception e) {
 				System.out.println("Unable to write the InvertedIndex to JSON file at " + currentWritePath);
 				return;
@@ -127,7 +352,7 @@ public class Driver {
 		if (argMap.hasFlag("-counts")) {
 			Path currentWritePath = argMap.getPath("-counts", Path.of("counts.json"));
 			try {
-				library.toCountJson(currentWritePath);
+				library.toCountJson(currentWritePath, format);
 			} catch (Exception e) {
 				System.out.println("Unable to write the CountIndex to JSON file at " + currentWritePath);
 				return;
@@ -137,7 +362,7 @@ public class Driver {
 		if (argMap.hasFlag("-results")) {
 			Path currentWritePath = argMap.getPath("-results", Path.of("results.json"));
 			try {
-				query.toJson(currentWritePath);
+				query.toJson(currentWritePath, format);
 			} catch (Exception e) {
 				System.out.println("Unable to write the SearchResults to JSON file at " + currentWritePath);
 				return;
@@ -146,6 +371,17 @@ public class Driver {
 
 		if (queue != null) {
 			queue.join();
+			log.info(queue);
+		}
+		if (lock != null) {
+			log.info(lock);
+		}
+		if (cache != null) {
+			log.info(cache);
+		}
+		log.info(CachingStemmer.summary());
+		if (pool != null) {
+			pool.shutdown();
 		}
 		// calculate time elapsed and output
 		Duration elapsed = Duration.between(start, Instant.now());
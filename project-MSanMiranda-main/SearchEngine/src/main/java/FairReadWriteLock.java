@@ -0,0 +1,423 @@
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read/write lock that prefers writers: once a writer is waiting, new readers
+ * wait behind it instead of starving it, and waiting writers are served in the
+ * order they arrived. Optionally reentrant and supports tryLock with a timeout.
+ *
+ * Keeps counters for the time spent waiting for and holding the lock, and for
+ * the amount of threads waiting, so lock contention can be seen.
+ *
+ * @see SimpleReadWriteLock
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class FairReadWriteLock extends SimpleReadWriteLock {
+
+	/** The lock used for reading. */
+	private final SimpleLock readerLock;
+
+	/** The lock used for writing. */
+	private final SimpleLock writerLock;
+
+	/** The lock object used for synchronized access of readers and writers. */
+	private final Object lock;
+
+	/** Whether threads may acquire a lock they already hold. */
+	private final boolean reentrant;
+
+	/** The number of active read holds. */
+	private int readers;
+
+	/** The thread holding the write lock, if any. */
+	private Thread writer;
+
+	/** The number of write holds of the writer. */
+	private int writeHolds;
+
+	/** The writers waiting for the write lock, in arrival order. */
+	private final ArrayDeque<Thread> waitingWriters;
+
+	/** The number of readers waiting for the read lock. */
+	private int waitingReaders;
+
+	/** The read holds and hold start time of the current thread. */
+	private final ThreadLocal<long[]> readHolds;
+
+	/** The start time of the current write hold. */
+	private long writeStart;
+
+	/** The amount of times a lock was acquired. */
+	private long acquisitions;
+
+	/** The amount of times a thread had to wait for a lock. */
+	private long contended;
+
+	/** The total nanoseconds spent waiting for a lock. */
+	private long waitTime;
+
+	/** The total nanoseconds locks were held. */
+	private long holdTime;
+
+	/** The largest amount of threads waiting at once. */
+	private int maxQueueLength;
+
+	/**
+	 * Initializes a new non-reentrant fair read/write lock.
+	 */
+	public FairReadWriteLock() {
+		this(false);
+	}
+
+	/**
+	 * Initializes a new fair read/write lock.
+	 *
+	 * @param reentrant whether threads may acquire a lock they already hold,
+	 *                  including the read lock while holding the write lock
+	 */
+	public FairReadWriteLock(boolean reentrant) {
+		super();
+		this.readerLock = new ReadLock();
+		this.writerLock = new WriteLock();
+		this.lock = new Object();
+		this.reentrant = reentrant;
+		this.readers = 0;
+		this.writer = null;
+		this.writeHolds = 0;
+		this.waitingWriters = new ArrayDeque<Thread>();
+		this.waitingReaders = 0;
+		this.readHolds = ThreadLocal.withInitial(() -> new long[2]);
+	}
+
+	@Override
+	public SimpleLock readLock() {
+		return readerLock;
+	}
+
+	@Override
+	public SimpleLock writeLock() {
+		return writerLock;
+	}
+
+	@Override
+	public int readers() {
+		synchronized (lock) {
+			return readers;
+		}
+	}
+
+	@Override
+	public int writers() {
+		synchronized (lock) {
+			return writer == null ? 0 : 1;
+		}
+	}
+
+	/* Contention counters */
+
+	/**
+	 * Returns the amount of times a lock was acquired.
+	 *
+	 * @return the amount of acquisitions
+	 */
+	public long acquisitions() {
+		synchronized (lock) {
+			return acquisitions;
+		}
+	}
+
+	/**
+	 * Returns the amount of times a thread had to wait to acquire a lock.
+	 *
+	 * @return the amount of contended acquisitions
+	 */
+	public long contended() {
+		synchronized (lock) {
+			return contended;
+		}
+	}
+
+	/**
+	 * Returns the total time threads spent waiting for a lock.
+	 *
+	 * @param unit the time unit to return
+	 * @return the total wait time
+	 */
+	public long waitTime(TimeUnit unit) {
+		synchronized (lock) {
+			return unit.convert(waitTime, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Returns the total time locks were held, counting each reader separately.
+	 *
+	 * @param unit the time unit to return
+	 * @return the total hold time
+	 */
+	public long holdTime(TimeUnit unit) {
+		synchronized (lock) {
+			return unit.convert(holdTime, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Returns the amount of threads currently waiting for a lock.
+	 *
+	 * @return the current queue length
+	 */
+	public int queueLength() {
+		synchronized (lock) {
+			return waitingReaders + waitingWriters.size();
+		}
+	}
+
+	/**
+	 * Returns the largest amount of threads that waited for a lock at once.
+	 *
+	 * @return the maximum queue length
+	 */
+	public int maxQueueLength() {
+		synchronized (lock) {
+			return maxQueueLength;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return String.format("Lock: %d acquisitions, %d contended, wait %d ms, hold %d ms, max queue %d",
+					acquisitions, contended, TimeUnit.NANOSECONDS.toMillis(waitTime),
+					TimeUnit.NANOSECONDS.toMillis(holdTime), maxQueueLength);
+		}
+	}
+
+	/**
+	 * Records a successful acquisition. Must be called while synchronized on the
+	 * lock object.
+	 *
+	 * @param started the {@link System#nanoTime()} the thread started to acquire
+	 * @param waited  whether the thread had to wait for the lock
+	 * @return the {@link System#nanoTime()} the lock was acquired
+	 */
+	private long acquired(long started, boolean waited) {
+		long now = System.nanoTime();
+		acquisitions++;
+		if (waited) {
+			contended++;
+			waitTime += now - started;
+		}
+		return now;
+	}
+
+	/**
+	 * Updates the largest queue length seen. Must be called while synchronized on
+	 * the lock object.
+	 */
+	private void queued() {
+		maxQueueLength = Math.max(maxQueueLength, waitingReaders + waitingWriters.size());
+	}
+
+	/**
+	 * Waits on the lock object until notified, or until the deadline passes if
+	 * there is one. Must be called while synchronized on the lock object.
+	 *
+	 * @param deadline the {@link System#nanoTime()} to stop waiting at, or
+	 *                 {@link Long#MAX_VALUE} to wait without a deadline
+	 * @return false if the deadline passed or the thread was interrupted
+	 */
+	private boolean await(long deadline) {
+		try {
+			if (deadline == Long.MAX_VALUE) {
+				lock.wait();
+				return true;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			return true;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Used to maintain simultaneous read operations.
+	 */
+	private class ReadLock implements SimpleLock {
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while (!acquire(Long.MAX_VALUE)) {
+				// keep waiting, but restore the interrupt once the lock is acquired
+				interrupted |= Thread.interrupted();
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			return acquire(System.nanoTime() + unit.toNanos(time));
+		}
+
+		/**
+		 * Waits until there is no writer holding or waiting for the lock, unless the
+		 * current thread already holds a lock it may reenter.
+		 *
+		 * @param deadline the {@link System#nanoTime()} to stop waiting at
+		 * @return true if the read lock was acquired
+		 */
+		private boolean acquire(long deadline) {
+			long[] holds = readHolds.get();
+			long started = System.nanoTime();
+
+			synchronized (lock) {
+				boolean reentry = reentrant && (holds[0] > 0 || writer == Thread.currentThread());
+				boolean waited = !reentry && (writer != null || !waitingWriters.isEmpty());
+				if (waited) {
+					waitingReaders++;
+					queued();
+					try {
+						while (writer != null || !waitingWriters.isEmpty()) {
+							if (!await(deadline)) {
+								return false;
+							}
+						}
+					} finally {
+						waitingReaders--;
+					}
+				}
+
+				long now = acquired(started, waited);
+				readers++;
+				if (holds[0]++ == 0) {
+					holds[1] = now;
+				}
+				return true;
+			}
+		}
+
+		/**
+		 * Decreases the number of active readers and wakes up waiting writers when
+		 * the last reader leaves.
+		 *
+		 * @throws IllegalStateException if the current thread holds no read lock
+		 */
+		@Override
+		public void unlock() throws IllegalStateException {
+			long[] holds = readHolds.get();
+
+			synchronized (lock) {
+				if (readers <= 0 || holds[0] <= 0) {
+					throw new IllegalStateException();
+				}
+				readers--;
+				if (--holds[0] == 0) {
+					holdTime += System.nanoTime() - holds[1];
+				}
+				if (readers == 0 && !waitingWriters.isEmpty()) {
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Used to maintain exclusive write operations.
+	 */
+	private class WriteLock implements SimpleLock {
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while (!acquire(Long.MAX_VALUE)) {
+				// keep waiting, but restore the interrupt once the lock is acquired
+				interrupted |= Thread.interrupted();
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			return acquire(System.nanoTime() + unit.toNanos(time));
+		}
+
+		/**
+		 * Waits until there are no readers or writers and every writer that arrived
+		 * earlier has had its turn.
+		 *
+		 * @param deadline the {@link System#nanoTime()} to stop waiting at
+		 * @return true if the write lock was acquired
+		 */
+		private boolean acquire(long deadline) {
+			Thread current = Thread.currentThread();
+			long started = System.nanoTime();
+
+			synchronized (lock) {
+				if (writer == current && reentrant) {
+					acquired(started, false);
+					writeHolds++;
+					return true;
+				}
+
+				boolean waited = writer != null || readers > 0 || !waitingWriters.isEmpty();
+				waitingWriters.addLast(current);
+				queued();
+				while (writer != null || readers > 0 || waitingWriters.peekFirst() != current) {
+					if (!await(deadline)) {
+						waitingWriters.remove(current);
+						// the next writer in line or the readers behind it may go now
+						lock.notifyAll();
+						return false;
+					}
+				}
+				waitingWriters.removeFirst();
+
+				writeStart = acquired(started, waited);
+				writer = current;
+				writeHolds = 1;
+				return true;
+			}
+		}
+
+		/**
+		 * Releases one write hold, waking up waiting threads once the writer has
+		 * released all of its holds.
+		 *
+		 * @throws IllegalStateException           if no writers to unlock
+		 *
+		 * @throws ConcurrentModificationException if unlock is called by a thread that
+		 *                                         does not hold the write lock
+		 */
+		@Override
+		public void unlock() throws IllegalStateException, ConcurrentModificationException {
+			synchronized (lock) {
+				if (writer == null) {
+					throw new IllegalStateException();
+				}
+
+				if (writer != Thread.currentThread()) {
+					throw new ConcurrentModificationException();
+				}
+
+				if (--writeHolds == 0) {
+					holdTime += System.nanoTime() - writeStart;
+					writer = null;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+}
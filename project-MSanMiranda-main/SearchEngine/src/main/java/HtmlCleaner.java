@@ -10,19 +10,28 @@ import java.util.regex.Pattern;
  */
 public class HtmlCleaner {
 
+	/** A tag on a single line, lowercased before removing comments or elements */
+	private static final Pattern TAG = Pattern.compile("<.+?>");
+
 	/**
 	 * Removes all HTML tags and certain block elements from the provided text. The
 	 * block elements removed include: head, style, script, noscript, iframe, and
 	 * svg.
 	 *
+	 * The HTML is walked once by a {@link HtmlStream}, which removes the comments,
+	 * elements, tags and entities as it goes, instead of rewriting the whole text
+	 * once for each of them like {@link #stripBlockElements(String)},
+	 * {@link #stripTags(String)} and {@link #stripEntities(String)} in turn.
+	 *
 	 * @param html the HTML to strip tags and elements from
 	 * @return text clean of any HTML tags and certain block elements
 	 */
 	public static String stripHtml(String html) {
-		html = stripBlockElements(html);
-		html = stripTags(html);
-		html = stripEntities(html);
-		return html;
+		StringBuilder text = new StringBuilder(html.length());
+		HtmlStream stream = new HtmlStream((c) -> text.append((char) c));
+		stream.write(html);
+		stream.finish();
+		return text.toString();
 	}
 
 	/**
@@ -51,32 +60,34 @@ public class HtmlCleaner {
 	 * @return text without any HTML entities
 	 */
 	public static String stripEntities(String html) {
-		StringBuffer str = new StringBuffer(html);
-		int indexStart = 0, indexEnd;
-		Boolean key = true;
+		StringBuilder str = new StringBuilder(html.length());
+		int semicolon = -1, newline = -1;
+
+		for (int i = 0; i < html.length(); i++) {
+			char c = html.charAt(i);
+			if (c != '&') {
+				str.append(c);
+				continue;
+			}
+			if (i + 1 < html.length() && html.charAt(i + 1) == ' ') {
+				/* Entities are only removed up to the first "& " */
+				str.append(html, i, html.length());
+				break;
+			}
 
-		while (key) {
-			key = false;
-			if ((indexStart = str.indexOf("&")) != -1 && str.charAt(indexStart + 1) != ' ') {
-				if ((indexEnd = str.indexOf(";", indexStart)) == -1) {
-					indexEnd = str.indexOf("\n", indexStart);
-				} else {
-					indexEnd += 1;
-				}
-				str.delete(indexStart, indexEnd);
-				key = true;
+			if (semicolon < i) {
+				semicolon = html.indexOf(';', i);
 			}
-		}
-		while (key) {
-			key = false;
-			if ((indexStart = str.indexOf("#")) != -1) {
-				if ((indexEnd = str.indexOf(";", indexStart)) == -1) {
-					indexEnd = str.indexOf("\n", indexStart);
-				} else {
-					indexEnd += 1;
+			if (semicolon >= 0) {
+				i = semicolon;
+			} else {
+				if (newline < i) {
+					newline = html.indexOf('\n', i);
 				}
-				str.delete(indexStart, indexEnd);
-				key = true;
+				if (newline < 0) {
+					break;
+				}
+				i = newline - 1;
 			}
 		}
 
@@ -91,18 +102,18 @@ public class HtmlCleaner {
 	 * @return text without any HTML tags
 	 */
 	public static String stripTags(String html) {
-		StringBuffer str = new StringBuffer(html);
-		int indexStart = 0, indexEnd;
-		Boolean key = true;
-
-		while (key) {
-			key = false;
-			if ((indexStart = str.indexOf("<")) != -1) {
-				indexEnd = str.indexOf(">", indexStart) + 1;
-				str.delete(indexStart, indexEnd);
-				key = true;
+		StringBuilder str = new StringBuilder(html.length());
+		int start = 0, end;
+
+		for (int i = html.indexOf('<'); i >= 0; i = html.indexOf('<', end + 1)) {
+			str.append(html, start, i);
+			if ((end = html.indexOf('>', i)) < 0) {
+				/* An unclosed tag is removed to the end */
+				return str.toString();
 			}
+			start = end + 1;
 		}
+		str.append(html, start, html.length());
 
 		return str.toString();
 	}
@@ -132,9 +143,7 @@ public class HtmlCleaner {
 	 */
 	public static String stripComments(String html) {
 
-		String regex = "<.+?>";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
+		Matcher matcher = TAG.matcher(html);
 		html = matcher.replaceAll(x -> x.group().toLowerCase());
 
 		StringBuffer str = new StringBuffer(html);
@@ -182,9 +191,7 @@ public class HtmlCleaner {
 	 */
 	public static String stripElement(String html, String name) {
 
-		String regex = "<.+?>";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
+		Matcher matcher = TAG.matcher(html);
 		html = matcher.replaceAll(x -> x.group().toLowerCase());
 
 		// System.out.println(name + "\n" + html);
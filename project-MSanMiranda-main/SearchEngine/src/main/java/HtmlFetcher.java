@@ -1,14 +1,20 @@
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
-import java.net.Socket;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * A specialized version of {@link HttpsFetcher} that follows redirects and
  * returns HTML content if possible.
@@ -17,6 +23,21 @@ import java.util.Map;
  */
 public class HtmlFetcher {
 
+	/** A logger specifically for this class. */
+	private static final Logger log = LogManager.getLogger(HtmlFetcher.class);
+
+	/** Default most bytes of a page streamed, the rest being ignored */
+	public static final int MAX_PAGE = 4 * 1024 * 1024;
+
+	/** The bytes read at once while streaming */
+	private static final int BUFFER = 8 * 1024;
+
+	/** The reusable buffers and decoder of each thread streaming */
+	private static final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+	/** The connections kept open between fetches */
+	private static volatile HttpConnectionPool pool = new HttpConnectionPool();
+
 	/**
 	 * Returns {@code true} if and only if there is a "Content-Type" header and the
 	 * first value of that header starts with the value "text/html"
@@ -88,6 +109,7 @@ public class HtmlFetcher {
 	 * code is 200 and the content type is HTML, returns the HTML as a single
 	 * string. If the status code is a valid redirect, will follow that redirect if
 	 * the number of redirects is greater than 0. Otherwise, returns {@code null}.
+	 * Connections to a host are kept open and reused by later fetches.
 	 *
 	 * @param url       the url to fetch
 	 * @param redirects the number of times to follow redirects
@@ -98,17 +120,27 @@ public class HtmlFetcher {
 	 * @see #isRedirect(Map)
 	 */
 	public static String fetch(URL url, int redirects) {
-		try (Socket gate = HttpsFetcher.openConnection(url);
-				BufferedReader reader = new BufferedReader(new InputStreamReader(gate.getInputStream()));
-				PrintWriter writer = new PrintWriter(gate.getOutputStream());) {
+		return fetch(url, redirects, pool);
+	}
 
-			HttpsFetcher.printGetRequest(writer, url);
-			Map<String, List<String>> headers = HttpsFetcher.getHeaderFields(reader);
+	/**
+	 * Fetches the resource at the URL like {@link #fetch(URL, int)}, on a
+	 * connection of the given pool.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param pool      the connections to use
+	 * @return the html or {@code null} if unable to fetch the resource or the
+	 *         resource is not html
+	 */
+	public static String fetch(URL url, int redirects, HttpConnectionPool pool) {
+		try {
+			Map<String, List<String>> headers = pool.fetchURL(url);
 
 			if (isHtml(headers)) {
 				if (isOK(headers)) {
 					StringWriter str = new StringWriter();
-					List<String> content = HttpsFetcher.getContent(reader);
+					List<String> content = headers.get("Content");
 					Iterator<String> line = content.iterator();
 
 					if (line.hasNext()) {
@@ -121,7 +153,7 @@ public class HtmlFetcher {
 
 					return str.toString();
 				} else if (isRedirect(headers) && redirects > 0) {
-					return fetch(headers.get("Location").get(0), redirects - 1);
+					return fetch(new URL(url, headers.get("Location").get(0)), redirects - 1, pool);
 				}
 			}
 
@@ -131,6 +163,80 @@ public class HtmlFetcher {
 		}
 	}
 
+	/**
+	 * Fetches the resource at the URL like {@link #fetch(URL, int)}, writing the
+	 * HTML to the stream as it is read instead of returning it, so the page is
+	 * never held whole. Only the first bytes of a page up to the limit are
+	 * written, the rest is ignored.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param limit     the most bytes of the page written
+	 * @param html      the stream to write the html to
+	 * @return true if the html was written, false if unable to fetch the resource
+	 *         or the resource is not html, in which case part of it may have been
+	 *         written
+	 */
+	public static boolean stream(URL url, int redirects, int limit, HtmlStream html) {
+		return stream(url, redirects, limit, html, pool);
+	}
+
+	/**
+	 * Fetches the resource at the URL like {@link #stream(URL, int, int,
+	 * HtmlStream)}, on a connection of the given pool.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param limit     the most bytes of the page written
+	 * @param html      the stream to write the html to
+	 * @param pool      the connections to use
+	 * @return true if the html was written, false if unable to fetch the resource
+	 *         or the resource is not html
+	 */
+	public static boolean stream(URL url, int redirects, int limit, HtmlStream html, HttpConnectionPool pool) {
+		try {
+			Map<String, List<String>> headers = pool.fetchURL(url, (head, body) -> {
+				if (isHtml(head) && isOK(head)) {
+					decoders.get().decode(body, limit, html);
+				}
+			});
+
+			if (isHtml(headers)) {
+				if (isOK(headers)) {
+					return true;
+				} else if (isRedirect(headers) && redirects > 0) {
+					return stream(new URL(url, headers.get("Location").get(0)), redirects - 1, limit, html, pool);
+				}
+			}
+
+			return false;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the connections used by {@link #fetch(URL, int)}, closing the ones used
+	 * before.
+	 *
+	 * @param connections the connections to use
+	 */
+	public static void setPool(HttpConnectionPool connections) {
+		HttpConnectionPool previous = pool;
+		pool = connections;
+		previous.close();
+	}
+
+	/**
+	 * Closes the connections kept open between fetches. Fetches made after still
+	 * work, each on a connection of its own.
+	 *
+	 * @see HttpConnectionPool#close()
+	 */
+	public static void closePool() {
+		pool.close();
+	}
+
 	/**
 	 * Converts the {@link String} url into a {@link URL} object and then calls
 	 * {@link #fetch(URL, int)}.
@@ -174,4 +280,95 @@ public class HtmlFetcher {
 	public static String fetch(URL url) {
 		return fetch(url, 0);
 	}
+
+	/**
+	 * Decodes the bytes of pages as UTF-8 into the same text as the lines of
+	 * {@link #fetch(URL, int)} joined, with the same buffers for every page.
+	 */
+	private static class Decoder {
+
+		/** The bytes read and not decoded yet */
+		private final ByteBuffer bytes;
+
+		/** The characters decoded */
+		private final CharBuffer chars;
+
+		/** The decoder, replacing invalid bytes */
+		private final CharsetDecoder decoder;
+
+		/** Whether a line ended and was not written yet */
+		private boolean newline;
+
+		/** Whether the previous character was a carriage return */
+		private boolean carriage;
+
+		/** Basic constructor with no parameter */
+		public Decoder() {
+			this.bytes = ByteBuffer.allocate(BUFFER);
+			this.chars = CharBuffer.allocate(BUFFER);
+			this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		/**
+		 * Decodes the bytes of a page, up to the limit, writing the text to the
+		 * stream.
+		 *
+		 * @param body  the bytes of the page
+		 * @param limit the most bytes decoded
+		 * @param html  the stream to write the text to
+		 * @throws IOException if unable to read the bytes
+		 */
+		public void decode(InputStream body, int limit, HtmlStream html) throws IOException {
+			decoder.reset();
+			bytes.clear();
+			newline = false;
+			carriage = false;
+
+			int left = limit;
+			int read = 0;
+			while (left > 0 && (read = body.read(bytes.array(), bytes.position(), Math.min(bytes.remaining(), left))) >= 0) {
+				left -= read;
+				bytes.position(bytes.position() + read);
+				bytes.flip();
+				decoder.decode(bytes, chars, false);
+				write(html);
+				bytes.compact();
+			}
+			if (left <= 0) {
+				log.debug("Page truncated at " + limit + " bytes");
+			}
+
+			bytes.flip();
+			decoder.decode(bytes, chars, true);
+			decoder.flush(chars);
+			write(html);
+		}
+
+		/**
+		 * Function to write the characters decoded, every line terminator as a line
+		 * feed except the last one of the page
+		 *
+		 * @param html the stream to write the text to
+		 */
+		private void write(HtmlStream html) {
+			chars.flip();
+			while (chars.hasRemaining()) {
+				char c = chars.get();
+				if (c == '\n' && carriage) {
+					carriage = false;
+					continue;
+				}
+				carriage = c == '\r';
+				if (newline) {
+					html.write('\n');
+				}
+				newline = carriage || c == '\n';
+				if (!newline) {
+					html.write(c);
+				}
+			}
+			chars.clear();
+		}
+	}
 }
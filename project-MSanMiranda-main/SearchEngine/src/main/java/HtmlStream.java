@@ -0,0 +1,669 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Strips HTML into plain text as it is written, character by character, so a
+ * page can be cleaned while it is read instead of once read whole. Written
+ * whole, the text is the same as {@link HtmlCleaner#stripBlockElements(String)},
+ * {@link HtmlCleaner#stripTags(String)} and
+ * {@link HtmlCleaner#stripEntities(String)} in turn for every page they do not
+ * fail on whose tags each close on the line they open, as long as removing an
+ * element does not join the text around it into a new tag. Those passes
+ * lowercase the tags again after each element is removed, so for malformed
+ * pages like {@code <<head>E-->A</head>>E;& <script>} they lowercase text this
+ * class leaves as it is.
+ *
+ * Each pass of {@link HtmlCleaner} is a stage here, in the same order: tags
+ * lowercased, the doctype and comments removed, then the head, style, script,
+ * noscript, iframe and svg elements, then every tag, then entities. A stage
+ * only holds back the characters it cannot decide on yet, like an open comment
+ * or element, and hands every other one to the next stage right away.
+ *
+ * Optionally also keeps every anchor tag as found, one per line, so the links of
+ * a page can be found with {@link LinkParser#getValidLinks(String, String)}
+ * without keeping the page.
+ *
+ * Usage: {@code stream.write(html); stream.finish();}
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ *
+ * @see HtmlCleaner#stripHtml(String)
+ */
+public class HtmlStream {
+
+	/** The elements removed with their content, in the order they are removed */
+	private static final String[] ELEMENTS = { "head", "style", "script", "noscript", "iframe", "svg" };
+
+	/** The first stage */
+	private final Stage first;
+
+	/** The anchor tags found, or {@code null} to not keep them */
+	private final StringBuilder anchors;
+
+	/** Whether the current character is in an anchor tag */
+	private boolean anchor;
+
+	/** Whether the previous character started a tag, so could start an anchor */
+	private boolean open;
+
+	/**
+	 * Constructor with where to write the text.
+	 *
+	 * @param text where to write the text, a character at a time
+	 */
+	public HtmlStream(IntConsumer text) {
+		this(text, null);
+	}
+
+	/**
+	 * Constructor with where to write the text and the anchor tags.
+	 *
+	 * @param text    where to write the text, a character at a time
+	 * @param anchors where to write the anchor tags, or {@code null} to not keep
+	 *                them
+	 */
+	public HtmlStream(IntConsumer text, StringBuilder anchors) {
+		Stage stage = new Entities(new Output(text));
+		stage = new Tags(stage);
+		for (int i = ELEMENTS.length - 1; i >= 0; i--) {
+			stage = new Element(stage, ELEMENTS[i]);
+		}
+		stage = new Comments(stage);
+		this.first = new Lowercase(stage);
+		this.anchors = anchors;
+	}
+
+	/**
+	 * Writes the next character of the HTML.
+	 *
+	 * @param c the character
+	 */
+	public void write(char c) {
+		if (anchors != null) {
+			anchor(c);
+		}
+		first.accept(c);
+	}
+
+	/**
+	 * Writes the next characters of the HTML.
+	 *
+	 * @param html the characters
+	 */
+	public void write(CharSequence html) {
+		for (int i = 0; i < html.length(); i++) {
+			write(html.charAt(i));
+		}
+	}
+
+	/**
+	 * Ends the HTML, writing out the characters held back.
+	 */
+	public void finish() {
+		first.end();
+	}
+
+	/**
+	 * Function to keep the characters of anchor tags, from a {@code <a} or
+	 * {@code <A} to the next {@code >}
+	 *
+	 * @param c the next character of the HTML
+	 */
+	private void anchor(char c) {
+		if (anchor) {
+			anchors.append(c);
+			if (c == '>') {
+				anchors.append('\n');
+				anchor = false;
+			}
+		} else if (open && (c == 'a' || c == 'A')) {
+			anchors.append('<').append(c);
+			anchor = true;
+		}
+		open = c == '<';
+	}
+
+	/**
+	 * A pass of {@link HtmlCleaner} over the characters, handing the ones it
+	 * keeps to the next stage.
+	 */
+	private abstract static class Stage {
+
+		/** The next stage */
+		protected final Stage next;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 */
+		public Stage(Stage next) {
+			this.next = next;
+		}
+
+		/**
+		 * Takes the next character.
+		 *
+		 * @param c the character
+		 */
+		public abstract void accept(char c);
+
+		/**
+		 * Ends the characters, handing on the ones held back as the pass would.
+		 */
+		public void end() {
+			next.end();
+		}
+
+		/**
+		 * Function to hand characters to the next stage
+		 *
+		 * @param chars the characters
+		 */
+		protected void emit(CharSequence chars) {
+			for (int i = 0; i < chars.length(); i++) {
+				next.accept(chars.charAt(i));
+			}
+		}
+	}
+
+	/**
+	 * The text written out.
+	 */
+	private static class Output extends Stage {
+
+		/** Where to write the text */
+		private final IntConsumer text;
+
+		/**
+		 * Constructor
+		 *
+		 * @param text where to write the text
+		 */
+		public Output(IntConsumer text) {
+			super(null);
+			this.text = text;
+		}
+
+		@Override
+		public void accept(char c) {
+			text.accept(c);
+		}
+
+		@Override
+		public void end() {
+			// nothing held back
+		}
+	}
+
+	/**
+	 * Lowercases every {@code <.+?>} on a single line, like the passes of
+	 * {@link HtmlCleaner#stripComments(String)} and
+	 * {@link HtmlCleaner#stripElement(String, String)} do first.
+	 */
+	private static class Lowercase extends Stage {
+
+		/** The characters from a {@code <} not yet closed */
+		private final StringBuilder tag;
+
+		/** Whether a tag is open */
+		private boolean open;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 */
+		public Lowercase(Stage next) {
+			super(next);
+			this.tag = new StringBuilder();
+		}
+
+		@Override
+		public void accept(char c) {
+			if (!open) {
+				if (c == '<') {
+					open = true;
+					tag.append(c);
+				} else {
+					next.accept(c);
+				}
+			} else if (c == '>' && tag.length() >= 2) {
+				tag.append(c);
+				lowercase();
+				open = false;
+			} else if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				/* A tag must be on one line, and no later < on it can close either */
+				emit(tag);
+				tag.setLength(0);
+				open = false;
+				next.accept(c);
+			} else {
+				tag.append(c);
+			}
+		}
+
+		/**
+		 * Function to hand on the tag lowercased, without a string if it is ASCII
+		 */
+		private void lowercase() {
+			boolean ascii = true;
+			for (int i = 0; i < tag.length() && ascii; i++) {
+				ascii = tag.charAt(i) < 0x80;
+			}
+			if (ascii) {
+				for (int i = 0; i < tag.length(); i++) {
+					char c = tag.charAt(i);
+					next.accept(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+				}
+			} else {
+				emit(tag.toString().toLowerCase());
+			}
+			tag.setLength(0);
+		}
+
+		@Override
+		public void end() {
+			emit(tag);
+			tag.setLength(0);
+			open = false;
+			super.end();
+		}
+	}
+
+	/**
+	 * Removes the first doctype, then every comment from {@code <!} to the next
+	 * {@code ->}, like {@link HtmlCleaner#stripComments(String)}.
+	 */
+	private static class Comments extends Stage {
+
+		/** The doctype after {@code <!} */
+		private static final String DOCTYPE = "doctype";
+
+		/** Nothing held back */
+		private static final int TEXT = 0;
+
+		/** After a {@code <} */
+		private static final int OPEN = 1;
+
+		/** After {@code <!} and part of the doctype */
+		private static final int BANG = 2;
+
+		/** In a comment */
+		private static final int COMMENT = 3;
+
+		/** In the doctype */
+		private static final int IN_DOCTYPE = 4;
+
+		/** The current state */
+		private int state;
+
+		/** The amount of characters of the doctype matched after {@code <!} */
+		private int matched;
+
+		/** Whether the doctype was removed */
+		private boolean doctype;
+
+		/** Whether the previous character of the comment was a dash */
+		private boolean dash;
+
+		/** Whether the comment spans lines */
+		private boolean newline;
+
+		/** Whether a character was handed on yet */
+		private boolean text;
+
+		/** The characters of a comment before any handed on */
+		private final StringBuilder held;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 */
+		public Comments(Stage next) {
+			super(next);
+			this.held = new StringBuilder();
+		}
+
+		@Override
+		public void accept(char c) {
+			switch (state) {
+				case OPEN:
+					if (c == '!') {
+						state = BANG;
+						matched = 0;
+						dash = false;
+						newline = false;
+						return;
+					}
+					hand('<');
+					state = TEXT;
+					break;
+				case BANG:
+					if (!text) {
+						held.append(c);
+					}
+					if (!doctype && c == DOCTYPE.charAt(matched)) {
+						if (++matched == DOCTYPE.length()) {
+							doctype = true;
+							held.setLength(0);
+							state = IN_DOCTYPE;
+						}
+						return;
+					}
+					/* Not the doctype, and the letters so far cannot end a comment */
+					state = COMMENT;
+					comment(c);
+					return;
+				case COMMENT:
+					if (!text) {
+						held.append(c);
+					}
+					comment(c);
+					return;
+				case IN_DOCTYPE:
+					if (c == '>') {
+						state = TEXT;
+					}
+					return;
+				default:
+					break;
+			}
+
+			if (c == '<') {
+				state = OPEN;
+			} else {
+				hand(c);
+			}
+		}
+
+		/**
+		 * Function to hand a character on
+		 *
+		 * @param c the character
+		 */
+		private void hand(char c) {
+			text = true;
+			held.setLength(0);
+			next.accept(c);
+		}
+
+		/**
+		 * Function to take the next character of a comment
+		 *
+		 * @param c the character
+		 */
+		private void comment(char c) {
+			if (c == '>' && dash) {
+				state = TEXT;
+				held.setLength(0);
+				if (newline) {
+					hand(' ');
+				}
+				return;
+			}
+			dash = c == '-';
+			newline |= c == '\n';
+		}
+
+		@Override
+		public void end() {
+			if (state == OPEN) {
+				hand('<');
+			} else if ((state == BANG || state == COMMENT) && !text) {
+				/* HtmlCleaner only removes the < of an unclosed comment at the start */
+				String comment = held.toString();
+				hand('!');
+				emit(comment);
+			}
+			/* Any other unclosed comment or doctype fails HtmlCleaner, it is dropped */
+			held.setLength(0);
+			state = TEXT;
+			super.end();
+		}
+	}
+
+	/**
+	 * Removes every element of a name with its content, from {@code <name} to the
+	 * next {@code >} after {@code </name}, like
+	 * {@link HtmlCleaner#stripElement(String, String)}.
+	 */
+	private static class Element extends Stage {
+
+		/** The start of the element */
+		private final String start;
+
+		/** The start of the end tag */
+		private final String close;
+
+		/** The end of the start tag, used if there is no end tag */
+		private final String fallback;
+
+		/** The characters of the element so far */
+		private final StringBuilder element;
+
+		/** The amount of characters of the start matched */
+		private int opening;
+
+		/** Whether in the element */
+		private boolean inside;
+
+		/** The amount of characters of the end tag matched */
+		private int closing;
+
+		/** Whether the start of the end tag was found */
+		private boolean closed;
+
+		/** Whether the element spans lines */
+		private boolean newline;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 * @param name the name of the element
+		 */
+		public Element(Stage next, String name) {
+			super(next);
+			this.start = "<" + name;
+			this.close = "</" + name;
+			this.fallback = name + ">";
+			this.element = new StringBuilder();
+		}
+
+		@Override
+		public void accept(char c) {
+			if (inside) {
+				element.append(c);
+				newline |= c == '\n';
+				if (closed) {
+					if (c == '>') {
+						if (newline) {
+							next.accept(' ');
+						}
+						reset();
+					}
+				} else if (c == close.charAt(closing)) {
+					closed = ++closing == close.length();
+				} else {
+					closing = c == '<' ? 1 : 0;
+				}
+			} else if (c == start.charAt(opening)) {
+				if (++opening == start.length()) {
+					element.append(start);
+					inside = true;
+					opening = 0;
+				}
+			} else if (opening > 0) {
+				/* Only the first character of the start is a < */
+				emit(start.subSequence(0, opening));
+				opening = 0;
+				accept(c);
+			} else {
+				next.accept(c);
+			}
+		}
+
+		/**
+		 * Function to forget the element once removed
+		 */
+		private void reset() {
+			element.setLength(0);
+			inside = false;
+			closing = 0;
+			closed = false;
+			newline = false;
+		}
+
+		@Override
+		public void end() {
+			/* Without an end tag, only the start tag is removed if it ends with the name */
+			while (inside && !closed) {
+				String held = element.toString();
+				reset();
+				int index = held.indexOf(fallback);
+				if (index < 0) {
+					/* HtmlCleaner never ends on this element, so it is kept */
+					emit(held);
+					break;
+				}
+				int to = index + fallback.length();
+				int line = held.indexOf('\n');
+				if (line >= 0 && line < to) {
+					next.accept(' ');
+				}
+				for (int i = to; i < held.length(); i++) {
+					accept(held.charAt(i));
+				}
+			}
+			/* An end tag without a > never ends HtmlCleaner either, it is dropped */
+			reset();
+			emit(start.subSequence(0, opening));
+			opening = 0;
+			super.end();
+		}
+	}
+
+	/**
+	 * Removes every tag from {@code <} to the next {@code >}, like
+	 * {@link HtmlCleaner#stripTags(String)}.
+	 */
+	private static class Tags extends Stage {
+
+		/** Whether in a tag */
+		private boolean inside;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 */
+		public Tags(Stage next) {
+			super(next);
+		}
+
+		@Override
+		public void accept(char c) {
+			if (inside) {
+				inside = c != '>';
+			} else if (c == '<') {
+				inside = true;
+			} else {
+				next.accept(c);
+			}
+		}
+
+		@Override
+		public void end() {
+			/* An unclosed tag fails HtmlCleaner, it is dropped */
+			inside = false;
+			super.end();
+		}
+	}
+
+	/**
+	 * Removes every entity from {@code &} to the next {@code ;}, or to the end of
+	 * the line if there is no later {@code ;}, until an {@code &} followed by a
+	 * space, like {@link HtmlCleaner#stripEntities(String)}.
+	 */
+	private static class Entities extends Stage {
+
+		/** The characters from an {@code &} not yet ended */
+		private final StringBuilder entity;
+
+		/** Whether in an entity */
+		private boolean inside;
+
+		/** Whether an {@code &} followed by a space was found, ending the removal */
+		private boolean stopped;
+
+		/**
+		 * Constructor
+		 *
+		 * @param next the next stage
+		 */
+		public Entities(Stage next) {
+			super(next);
+			this.entity = new StringBuilder();
+		}
+
+		@Override
+		public void accept(char c) {
+			if (inside) {
+				if (entity.length() == 1 && c == ' ') {
+					stopped = true;
+					inside = false;
+					entity.setLength(0);
+					next.accept('&');
+					next.accept(c);
+				} else if (c == ';') {
+					inside = false;
+					entity.setLength(0);
+				} else {
+					entity.append(c);
+				}
+			} else if (c == '&' && !stopped) {
+				inside = true;
+				entity.append(c);
+			} else {
+				next.accept(c);
+			}
+		}
+
+		@Override
+		public void end() {
+			if (inside) {
+				/*
+				 * No ; is left, so every entity held is removed to the end of its line, or
+				 * dropped on the last line since it fails HtmlCleaner there
+				 */
+				boolean removing = true;
+				for (int i = 1; i < entity.length(); i++) {
+					char c = entity.charAt(i);
+					if (removing) {
+						if (c == '\n') {
+							removing = false;
+							next.accept(c);
+						}
+					} else if (c == '&' && !stopped) {
+						stopped = i + 1 < entity.length() && entity.charAt(i + 1) == ' ';
+						removing = !stopped;
+						if (stopped) {
+							next.accept(c);
+						}
+					} else {
+						next.accept(c);
+					}
+				}
+			}
+			inside = false;
+			entity.setLength(0);
+			super.end();
+		}
+	}
+}
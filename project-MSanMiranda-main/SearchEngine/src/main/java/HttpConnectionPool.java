@@ -0,0 +1,641 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the {@link Socket} connections of {@link HttpsFetcher} open between
+ * requests to the same host, so fetching many pages of a host only connects
+ * (and for HTTPS, handshakes) once per connection instead of once per page.
+ *
+ * Requests ask the server to keep the connection alive, and the response body
+ * is read by its Content-Length or chunks, so the connection is left at the
+ * start of the next response. A connection is only reused if the whole body was
+ * read and neither side asked to close it. At most a fixed amount of
+ * connections per host are open at once, further requests waiting for one to be
+ * given back, and connections idle for longer than the idle timeout are closed,
+ * for every host at most once per idle timeout as connections are given back.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ *
+ * @see HttpsFetcher#fetchURL(URL)
+ */
+public class HttpConnectionPool implements AutoCloseable {
+
+	/** A logger specifically for this class. */
+	private static final Logger log = LogManager.getLogger(HttpConnectionPool.class);
+
+	/** Default amount of connections open at once per host */
+	public static final int DEFAULT_MAX_PER_HOST = 8;
+
+	/** Default milliseconds a connection is kept open while not used */
+	public static final long DEFAULT_IDLE = 30_000;
+
+	/** The most bytes of content left unread skipped to reuse a connection */
+	public static final int DRAIN = 64 * 1024;
+
+	/** The amount of connections open at once per host */
+	private final int maxPerHost;
+
+	/** The milliseconds a connection is kept open while not used */
+	private final long idle;
+
+	/** The connections of every host, by protocol, host and port */
+	private final ConcurrentHashMap<String, Host> hosts;
+
+	/** The time in milliseconds idle connections are next evicted after */
+	private final AtomicLong nextEviction;
+
+	/** Whether the pool was closed */
+	private volatile boolean closed;
+
+	/** Basic constructor with no parameter */
+	public HttpConnectionPool() {
+		this(DEFAULT_MAX_PER_HOST, DEFAULT_IDLE);
+	}
+
+	/**
+	 * Constructor with the connection limits. An idle timeout of 0 closes every
+	 * connection after its response, like {@link HttpsFetcher#fetchURL(URL)}.
+	 *
+	 * @param maxPerHost the amount of connections open at once per host
+	 * @param idle       the milliseconds a connection is kept open while not used
+	 */
+	public HttpConnectionPool(int maxPerHost, long idle) {
+		if (maxPerHost < 1 || idle < 0) {
+			throw new IllegalArgumentException("Invalid connection limits: " + maxPerHost + ", " + idle);
+		}
+		this.maxPerHost = maxPerHost;
+		this.idle = idle;
+		this.hosts = new ConcurrentHashMap<String, Host>();
+		this.nextEviction = new AtomicLong(System.currentTimeMillis() + idle);
+	}
+
+	/**
+	 * Fetches the headers and content for the specified URL on a pooled
+	 * connection. The content is placed as a list of all the lines fetched under
+	 * the "Content" key, like {@link HttpsFetcher#fetchURL(URL)}.
+	 *
+	 * @param url the url to fetch
+	 * @return a map with the headers and content
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	public Map<String, List<String>> fetchURL(URL url) throws IOException {
+		return fetchURL(url, (headers, body) -> {
+			headers.put("Content", lines(new String(body.readAllBytes(), StandardCharsets.UTF_8)));
+		});
+	}
+
+	/**
+	 * Fetches the headers for the specified URL on a pooled connection, handing
+	 * the content to the reader as it arrives instead of keeping it. Whatever the
+	 * reader leaves unread is skipped, up to {@link #DRAIN} bytes, so the
+	 * connection can be reused, or else the connection is closed.
+	 *
+	 * @param url    the url to fetch
+	 * @param reader the reader of the content
+	 * @return a map with the headers
+	 * @throws IOException if unable to fetch headers and content, or the reader
+	 *                     throws it
+	 */
+	public Map<String, List<String>> fetchURL(URL url, BodyReader reader) throws IOException {
+		Host host = hosts.computeIfAbsent(key(url), (key) -> new Host());
+		try {
+			host.permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for a connection to " + url, e);
+		}
+
+		try {
+			Connection connection = host.poll(System.currentTimeMillis() - idle);
+			if (connection != null) {
+				Map<String, List<String>> headers = fetch(host, connection, url, reader, true);
+				if (headers != null) {
+					return headers;
+				}
+				/* The server may close an idle connection at any time */
+				log.debug("Stale connection to " + url);
+			}
+			return fetch(host, new Connection(HttpsFetcher.openConnection(url)), url, reader, false);
+		} finally {
+			host.permits.release();
+		}
+	}
+
+	/**
+	 * Function to send a request on a connection and hand its response to the
+	 * reader, giving the connection back to the host if it can be reused
+	 *
+	 * @param host       the host the connection is to
+	 * @param connection the connection to use
+	 * @param url        the url to fetch
+	 * @param reader     the reader of the content
+	 * @param pooled     whether the connection was used before
+	 * @return a map with the headers, or {@code null} if the connection was used
+	 *         before and no response could be read on it
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	private Map<String, List<String>> fetch(Host host, Connection connection, URL url, BodyReader reader,
+			boolean pooled) throws IOException {
+		boolean reuse = false;
+		try {
+			boolean keepAlive = idle > 0 && !closed;
+			Map<String, List<String>> headers;
+			try {
+				PrintWriter request = new PrintWriter(
+						new OutputStreamWriter(connection.socket.getOutputStream(), StandardCharsets.UTF_8));
+				HttpsFetcher.printGetRequest(request, url, keepAlive);
+				headers = getHeaderFields(connection.input);
+			} catch (IOException e) {
+				if (pooled) {
+					return null;
+				}
+				throw e;
+			}
+
+			Body body = new Body(connection.input, headers);
+			reader.read(headers, body);
+
+			reuse = keepAlive && delimited(headers) && !closes(headers) && body.drain(DRAIN);
+			return headers;
+		} finally {
+			long now = System.currentTimeMillis();
+			if (reuse) {
+				connection.used = now;
+				host.offer(connection);
+			} else {
+				connection.close();
+			}
+			evictIfDue(now);
+		}
+	}
+
+	/**
+	 * Closes the idle connections of every host if an idle timeout has passed
+	 * since they were last evicted, so connections to hosts no longer fetched do
+	 * not stay open until the pool is closed. Only one thread evicts at a time.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	private void evictIfDue(long now) {
+		long due = nextEviction.get();
+		if (now >= due && nextEviction.compareAndSet(due, now + idle)) {
+			int evicted = evictIdle();
+			if (evicted > 0) {
+				log.debug("Evicted " + evicted + " idle connections");
+			}
+		}
+	}
+
+	/**
+	 * Closes every connection that has been idle for longer than the idle
+	 * timeout.
+	 *
+	 * @return the amount of connections closed
+	 */
+	public int evictIdle() {
+		long oldest = System.currentTimeMillis() - idle;
+		int evicted = 0;
+		for (Host host : hosts.values()) {
+			evicted += host.evict(oldest);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Closes every idle connection. Connections in use are closed once given
+	 * back.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Host host : hosts.values()) {
+			host.evict(Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Function to name the host of a URL, connections only being shared by URLs
+	 * of the same protocol, host and port
+	 *
+	 * @param url the url
+	 * @return the key of the host
+	 */
+	private static String key(URL url) {
+		int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+		return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+	}
+
+	/**
+	 * Gets the header fields from a socket connection, in the same form as
+	 * {@link HttpsFetcher#getHeaderFields(java.io.BufferedReader)}, reading no
+	 * further than the end of the headers.
+	 *
+	 * @param input the input stream of a socket connection
+	 * @return a map of header fields to a list of header values
+	 * @throws IOException if unable to read from socket
+	 */
+	private static Map<String, List<String>> getHeaderFields(InputStream input) throws IOException {
+		Map<String, List<String>> results = new HashMap<>();
+
+		String line = readLine(input);
+		if (line == null) {
+			throw new EOFException("Connection closed before the response");
+		}
+		results.put(null, List.of(line));
+
+		while ((line = readLine(input)) != null && !line.isBlank()) {
+			String[] split = line.split(":\\s*", 2);
+			if (split.length == 2) {
+				results.computeIfAbsent(split[0], (name) -> new ArrayList<>()).add(split[1]);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Function to tell if the end of the body of a response is known without the
+	 * connection being closed
+	 *
+	 * @param headers the headers of the response
+	 * @return true if the body has no content, a Content-Length or chunks
+	 */
+	private static boolean delimited(Map<String, List<String>> headers) {
+		return empty(headers) || chunked(headers) || header(headers, "Content-Length") != null;
+	}
+
+	/**
+	 * Function to tell if a response has no body by its status code
+	 *
+	 * @param headers the headers of the response
+	 * @return true if the response has no body
+	 */
+	private static boolean empty(Map<String, List<String>> headers) {
+		int code = HtmlFetcher.getStatusCode(headers);
+		return code / 100 == 1 || code == 204 || code == 304;
+	}
+
+	/**
+	 * Function to tell if the body of a response is sent in chunks
+	 *
+	 * @param headers the headers of the response
+	 * @return true if the body is chunked
+	 */
+	private static boolean chunked(Map<String, List<String>> headers) {
+		String encoding = header(headers, "Transfer-Encoding");
+		return encoding != null && encoding.toLowerCase().contains("chunked");
+	}
+
+	/**
+	 * Function to tell if either side asked to close the connection after a
+	 * response, or the server only speaks HTTP/1.0
+	 *
+	 * @param headers the headers of the response
+	 * @return true if the connection must be closed
+	 */
+	private static boolean closes(Map<String, List<String>> headers) {
+		String connection = header(headers, "Connection");
+		if (connection != null) {
+			return connection.equalsIgnoreCase("close");
+		}
+		return !headers.get(null).get(0).startsWith("HTTP/1.1");
+	}
+
+	/**
+	 * Function to find the first value of a header, ignoring the case of its name
+	 *
+	 * @param headers the headers of the response
+	 * @param name    the name of the header
+	 * @return the first value, or {@code null} if there is no such header
+	 */
+	private static String header(Map<String, List<String>> headers, String name) {
+		for (var entry : headers.entrySet()) {
+			if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Function to read the size line of a chunk
+	 *
+	 * @param input the input stream of a socket connection
+	 * @return the size of the chunk, 0 for the last one
+	 * @throws IOException if unable to read from socket or the size is invalid
+	 */
+	private static int chunkSize(InputStream input) throws IOException {
+		String line = readLine(input);
+		if (line == null) {
+			throw new EOFException("Connection closed in a chunked body");
+		}
+		int extension = line.indexOf(';');
+		try {
+			return Integer.parseInt((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid chunk size: " + line, e);
+		}
+	}
+
+	/**
+	 * Function to read a header line, ending in a line feed, without its line
+	 * terminator
+	 *
+	 * @param input the input stream of a socket connection
+	 * @return the line, or {@code null} if the connection was closed before any
+	 *         byte of it
+	 * @throws IOException if unable to read from socket
+	 */
+	private static String readLine(InputStream input) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = input.read()) != -1 && b != '\n') {
+			line.write(b);
+		}
+		if (b == -1 && line.size() == 0) {
+			return null;
+		}
+		int size = line.size();
+		String text = line.toString(StandardCharsets.ISO_8859_1);
+		return size > 0 && text.charAt(size - 1) == '\r' ? text.substring(0, size - 1) : text;
+	}
+
+	/**
+	 * Function to split a body into lines, the same way as
+	 * {@link java.io.BufferedReader#lines()}
+	 *
+	 * @param body the body
+	 * @return the lines of the body
+	 */
+	private static List<String> lines(String body) {
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c == '\n' || c == '\r') {
+				lines.add(body.substring(start, i));
+				if (c == '\r' && i + 1 < body.length() && body.charAt(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		if (start < body.length()) {
+			lines.add(body.substring(start));
+		}
+		return lines;
+	}
+
+	@Override
+	public String toString() {
+		return "HttpConnectionPool[hosts=" + hosts.size() + ", maxPerHost=" + maxPerHost + ", idle=" + idle + "ms]";
+	}
+
+	/**
+	 * Reads the content of a response as it arrives.
+	 */
+	public interface BodyReader {
+
+		/**
+		 * Reads the content of a response. The content may be left partly unread,
+		 * and must not be read after returning.
+		 *
+		 * @param headers the headers of the response
+		 * @param body    the content of the response, without its chunk sizes
+		 * @throws IOException if unable to read the content
+		 */
+		public void read(Map<String, List<String>> headers, InputStream body) throws IOException;
+	}
+
+	/**
+	 * The content of a response, read by its Content-Length, its chunks, or until
+	 * the connection is closed, so the connection is left at the start of the
+	 * next response once it is all read.
+	 */
+	private static class Body extends InputStream {
+
+		/** The input stream of the socket connection */
+		private final InputStream input;
+
+		/** Whether the content is sent in chunks */
+		private final boolean chunked;
+
+		/** The bytes left of the content or the current chunk, or -1 until closed */
+		private long remaining;
+
+		/** Whether all of the content was read */
+		private boolean done;
+
+		/**
+		 * Constructor
+		 *
+		 * @param input   the input stream of the socket connection
+		 * @param headers the headers of the response
+		 * @throws IOException if the Content-Length is invalid
+		 */
+		public Body(InputStream input, Map<String, List<String>> headers) throws IOException {
+			this.input = input;
+			this.chunked = !empty(headers) && chunked(headers);
+			String length = header(headers, "Content-Length");
+			if (empty(headers)) {
+				this.done = true;
+			} else if (chunked) {
+				this.remaining = 0;
+			} else if (length != null) {
+				try {
+					this.remaining = Long.parseLong(length.trim());
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid Content-Length: " + length, e);
+				}
+				this.done = remaining == 0;
+			} else {
+				this.remaining = -1;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (done) {
+				return -1;
+			}
+			if (len == 0) {
+				return 0;
+			}
+			if (chunked && remaining == 0) {
+				remaining = chunkSize(input);
+				if (remaining == 0) {
+					/* Trailers */
+					String line;
+					while ((line = readLine(input)) != null && !line.isEmpty()) {
+						log.trace("Trailer " + line);
+					}
+					done = true;
+					return -1;
+				}
+			}
+
+			int read = input.read(b, off, remaining < 0 ? len : (int) Math.min(len, remaining));
+			if (read < 0) {
+				if (remaining < 0) {
+					done = true;
+					return -1;
+				}
+				throw new EOFException("Connection closed with " + remaining + " bytes left");
+			}
+			if (remaining > 0 && (remaining -= read) == 0) {
+				if (chunked) {
+					readLine(input);
+				} else {
+					done = true;
+				}
+			}
+			return read;
+		}
+
+		/**
+		 * Skips the rest of the content, if there is at most a given amount.
+		 *
+		 * @param limit the most bytes to skip
+		 * @return true if all of the content was read
+		 * @throws IOException if unable to read from socket
+		 */
+		public boolean drain(int limit) throws IOException {
+			byte[] skipped = new byte[8192];
+			int read;
+			while (!done && limit > 0 && (read = read(skipped, 0, Math.min(skipped.length, limit))) >= 0) {
+				limit -= read;
+			}
+			return done;
+		}
+	}
+
+	/**
+	 * The idle connections to a single host, and the permits to open one.
+	 */
+	private class Host {
+
+		/** The idle connections, the most recently used first */
+		private final ArrayDeque<Connection> idle;
+
+		/** A permit for each connection that may be in use */
+		private final Semaphore permits;
+
+		/** Basic constructor with no parameter */
+		public Host() {
+			this.idle = new ArrayDeque<Connection>();
+			this.permits = new Semaphore(maxPerHost, true);
+		}
+
+		/**
+		 * Takes the most recently used idle connection, closing the ones idle
+		 * since before the given time.
+		 *
+		 * @param oldest the time in milliseconds a connection must be used after
+		 * @return the connection, or {@code null} if none is idle
+		 */
+		public synchronized Connection poll(long oldest) {
+			evict(oldest);
+			return idle.pollFirst();
+		}
+
+		/**
+		 * Gives back a connection, closing it if the pool was closed.
+		 *
+		 * @param connection the connection
+		 */
+		public synchronized void offer(Connection connection) {
+			if (closed) {
+				connection.close();
+			} else {
+				idle.addFirst(connection);
+			}
+		}
+
+		/**
+		 * Closes the connections idle since before the given time.
+		 *
+		 * @param oldest the time in milliseconds a connection must be used after
+		 * @return the amount of connections closed
+		 */
+		public synchronized int evict(long oldest) {
+			int evicted = 0;
+			Iterator<Connection> iterator = idle.descendingIterator();
+			while (iterator.hasNext()) {
+				Connection connection = iterator.next();
+				if (connection.used >= oldest && !connection.socket.isClosed()) {
+					break;
+				}
+				iterator.remove();
+				connection.close();
+				evicted++;
+			}
+			return evicted;
+		}
+	}
+
+	/**
+	 * A socket connection, buffered, and when it was last used.
+	 */
+	private static class Connection {
+
+		/** The socket */
+		private final Socket socket;
+
+		/** The buffered input stream of the socket */
+		private final InputStream input;
+
+		/** The time in milliseconds the connection was last used */
+		private long used;
+
+		/**
+		 * Constructor
+		 *
+		 * @param socket the socket
+		 * @throws IOException if unable to get the input stream of the socket
+		 */
+		public Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.input = new BufferedInputStream(socket.getInputStream());
+			this.used = System.currentTimeMillis();
+		}
+
+		/**
+		 * Closes the socket, ignoring errors.
+		 */
+		public void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				log.trace("Connection.close");
+			}
+		}
+	}
+}
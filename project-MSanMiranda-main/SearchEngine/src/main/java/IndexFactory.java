@@ -3,6 +3,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,15 +34,10 @@ public class IndexFactory {
 	 * @param map      the inverted index to write to
 	 * @param url the location where the large String was generated
 	 *
-	 * @see InvertedIndex#addIndex(String, String, Integer)
+	 * @see InvertedIndex#addDocument(String, List)
 	 */
 	public static void filePopulate(String largeString, String url, InvertedIndex map) {
-		int i = 1;
-		ArrayList<String> set = TextFileStemmer.listStems(largeString);
-		for (var word : set) {
-			map.addIndex(word, url, i);
-			i++;
-		}
+		map.addDocument(url, TextFileStemmer.listStems(largeString));
 	}
 
 	/**
@@ -51,23 +48,25 @@ public class IndexFactory {
 	 * @param map      the inverted index to write to
 	 * @throws IOException if unable to read or parse file
 	 *
-	 * @see TextParser#parse(String)
-	 * @see SnowballStemmer#stem(CharSequence)
-	 * @see InvertedIndex#addIndex(String, String, Integer)
+	 * @see TextTokenizer#next()
+	 * @see CachingStemmer#stem(CharSequence)
+	 * @see InvertedIndex#addDocument(String, List)
 	 */
 	public static void filePopulate(Path location, InvertedIndex map) throws IOException {
-		SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
-		int i = 1;
+		CachingStemmer stemmer = CachingStemmer.get();
+		TextTokenizer tokenizer = new TextTokenizer();
+		ArrayList<String> words = new ArrayList<String>();
 		String line;
 
 		try (BufferedReader reader = Files.newBufferedReader(location)) {
 			while ((line = reader.readLine()) != null) {
-				for (var word : TextParser.parse(line)) {
-					map.addIndex(stemmer.stem(word).toString(), location.toString(), i);
-					i++;
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					words.add(stemmer.stem(tokenizer.token()).toString());
 				}
 			}
 		}
+		map.addDocument(location.toString(), words);
 	}
 
 	/**
@@ -88,4 +87,63 @@ public class IndexFactory {
 		}
 	}
 
+	/**
+	 * A function to bring an InvertedIndex built from a path up to date, reading
+	 * only the files added or changed since the metadata was recorded and removing
+	 * the files not found anymore.
+	 *
+	 * @param start    the input file to parse
+	 * @param map      the InvertedIndex built from the path before
+	 * @param metadata the metadata recorded when it was built, updated in place
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see #changedFiles(Path, InvertedIndex, IndexMetadata)
+	 */
+	public static void update(Path start, InvertedIndex map, IndexMetadata metadata) throws IOException {
+		for (Path location : changedFiles(start, map, metadata)) {
+			log.trace(location);
+			filePopulate(location, map);
+			metadata.indexed(location);
+		}
+	}
+
+	/**
+	 * A function to find the files added or changed since the metadata was
+	 * recorded. The old words of changed files and every word of files not found
+	 * anymore are removed from the index, so the returned files only need to be
+	 * read into it.
+	 *
+	 * @param start    the input file to parse
+	 * @param map      the InvertedIndex built from the path before
+	 * @param metadata the metadata recorded when it was built, updated in place
+	 * @return the files to read into the index
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see IndexMetadata#update(Path)
+	 * @see InvertedIndex#removeLocation(String)
+	 */
+	protected static List<Path> changedFiles(Path start, InvertedIndex map, IndexMetadata metadata)
+			throws IOException {
+		ArrayList<Path> changed = new ArrayList<Path>();
+		HashSet<String> found = new HashSet<String>();
+		for (Path location : TextFileFinder.checkPath(start)) {
+			String name = location.toString();
+			/* Postings left by a file never recorded, such as one that failed to be read, are removed too */
+			boolean known = metadata.locations().contains(name) || map.containsLocationCount(name);
+			found.add(name);
+			if (metadata.update(location)) {
+				if (known) {
+					map.removeLocation(name);
+				}
+				changed.add(location);
+			}
+		}
+		for (String location : metadata.retain(found)) {
+			log.trace("Removes " + location);
+			map.removeLocation(location);
+		}
+		log.debug(changed.size() + " of " + found.size() + " files changed");
+		return changed;
+	}
+
 }
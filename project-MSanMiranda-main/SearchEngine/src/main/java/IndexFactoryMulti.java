@@ -1,5 +1,7 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,14 +23,15 @@ public class IndexFactoryMulti extends IndexFactory {
 	 * path is a file or a directory.
 	 *
 	 * @param start the input file to parse
-	 * @param map   the InvertedIndex to write to
+	 * @param map   the thread-safe InvertedIndex to write to, like
+	 *              {@link InvertedIndexMulti} or {@link ConcurrentInvertedIndex}
 	 * @param queue the workQueue to use
 	 * @throws IOException when an IOException occurs
 	 *
 	 * @see TextFileFinder#checkPath(Path)
 	 * @see #filePopulate(Path, InvertedIndex)
 	 */
-	public static void build(Path start, InvertedIndexMulti map, WorkQueue queue) throws IOException {
+	public static void build(Path start, InvertedIndex map, WorkQueue queue) throws IOException {
 		for (Path location : TextFileFinder.checkPath(start)) {
 			log.debug("queue.execute");
 			queue.execute(new ScanFile(location, map));
@@ -37,6 +40,121 @@ public class IndexFactoryMulti extends IndexFactory {
 		log.debug("queue.finish");
 	}
 
+	/**
+	 * A function to bring an InvertedIndex built from a path up to date, reading
+	 * the files added or changed since the metadata was recorded on the work
+	 * queue.
+	 *
+	 * @param start    the input file to parse
+	 * @param map      the thread-safe InvertedIndex built from the path before
+	 * @param metadata the metadata recorded when it was built, updated in place
+	 * @param queue    the workQueue to use
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see #changedFiles(Path, InvertedIndex, IndexMetadata)
+	 */
+	public static void update(Path start, InvertedIndex map, IndexMetadata metadata, WorkQueue queue)
+			throws IOException {
+		for (Path location : changedFiles(start, map, metadata)) {
+			log.debug("queue.execute");
+			queue.execute(new ScanFile(location, map, metadata));
+		}
+		queue.finish();
+		log.debug("queue.finish");
+	}
+
+	/**
+	 * A function to build and populate the InvertedIndexMulti given a path without
+	 * merging every file into it. Each file is read into one of a few partial
+	 * indexes, taken by a worker for the file and given back after, so each
+	 * partial index holds many files. The partial indexes are then merged in pairs
+	 * on the work queue, halving them until one is left, which is merged into the
+	 * shared index once.
+	 *
+	 * @param start the input file to parse
+	 * @param map   the thread-safe InvertedIndex to write to
+	 * @param queue the workQueue to use
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see #build(Path, InvertedIndex, WorkQueue)
+	 */
+	public static void buildReduced(Path start, InvertedIndex map, WorkQueue queue) throws IOException {
+		ConcurrentLinkedDeque<InvertedIndex> partials = new ConcurrentLinkedDeque<InvertedIndex>();
+		for (Path location : TextFileFinder.checkPath(start)) {
+			log.debug("queue.execute");
+			queue.execute(new ScanFilePartial(location, partials));
+		}
+		queue.finish();
+		log.debug("queue.finish " + partials.size() + " partial indexes");
+
+		ArrayList<InvertedIndex> level = new ArrayList<InvertedIndex>(partials);
+		while (level.size() > 1) {
+			ArrayList<InvertedIndex> next = new ArrayList<InvertedIndex>();
+			for (int i = 0; i + 1 < level.size(); i += 2) {
+				InvertedIndex first = level.get(i);
+				InvertedIndex second = level.get(i + 1);
+				boolean larger = first.uniqueWords() >= second.uniqueWords();
+				InvertedIndex into = larger ? first : second;
+				InvertedIndex from = larger ? second : first;
+				queue.execute(() -> into.moveAll(from));
+				next.add(into);
+			}
+			if (level.size() % 2 == 1) {
+				next.add(level.get(level.size() - 1));
+			}
+			queue.finish();
+			log.debug("queue.finish " + next.size() + " partial indexes");
+			level = next;
+		}
+
+		if (!level.isEmpty()) {
+			map.moveAll(level.get(0));
+		}
+	}
+
+	/**
+	 * Runnable function reading a single file into a partial index, taken from
+	 * the shared partial indexes or made new if none is free, and given back once
+	 * the file is read.
+	 *
+	 * @see IndexFactoryMulti#buildReduced(Path, InvertedIndex, WorkQueue)
+	 */
+	private static class ScanFilePartial implements Runnable {
+
+		/** The partial indexes not used by a worker */
+		private final ConcurrentLinkedDeque<InvertedIndex> partials;
+		/** Path when building */
+		private final Path location;
+
+		/**
+		 * Constructor with the file to read and the partial indexes.
+		 *
+		 * @param location Path when building
+		 * @param partials the partial indexes not used by a worker
+		 */
+		public ScanFilePartial(Path location, ConcurrentLinkedDeque<InvertedIndex> partials) {
+			this.location = location;
+			this.partials = partials;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex partial = partials.pollFirst();
+			if (partial == null) {
+				log.trace("New partial index");
+				partial = new InvertedIndex();
+			}
+			try {
+				log.trace("Populates partial index");
+				filePopulate(location, partial);
+			} catch (IOException e) {
+				log.trace("ScanFilePartial.run");
+			} finally {
+				partials.addFirst(partial);
+			}
+		}
+	}
+
 	/**
 	 * Runnable function for a MultiThreaded building of InvertedIndex, each
 	 * instance reads a single file.
@@ -46,9 +164,11 @@ public class IndexFactoryMulti extends IndexFactory {
 	private static class ScanFile implements Runnable {
 		
 		/** InvertedIndex Reference */
-		private InvertedIndexMulti map;
+		private InvertedIndex map;
 		/** Path when building */
 		private Path location;
+		/** Metadata to record the file in once indexed, or null */
+		private IndexMetadata metadata;
 
 		/**
 		 * Constructor with data to look at and data.
@@ -56,9 +176,22 @@ public class IndexFactoryMulti extends IndexFactory {
 		 * @param map      InvertedIndex Reference
 		 * @param location Path when building;
 		 */
-		public ScanFile(Path location, InvertedIndexMulti map) {
+		public ScanFile(Path location, InvertedIndex map) {
+			this(location, map, null);
+		}
+
+		/**
+		 * Constructor with data to look at, data and the metadata to record the file
+		 * in once indexed.
+		 * 
+		 * @param map      InvertedIndex Reference
+		 * @param location Path when building;
+		 * @param metadata metadata to record the file in, or null
+		 */
+		public ScanFile(Path location, InvertedIndex map, IndexMetadata metadata) {
 			this.location = location;
 			this.map = map;
+			this.metadata = metadata;
 		}
 
 		@Override
@@ -71,7 +204,10 @@ public class IndexFactoryMulti extends IndexFactory {
 				filePopulate(location, local);
 
 				log.trace("Appends index");
-				map.addAll(local);
+				map.moveAll(local);
+				if (metadata != null) {
+					metadata.indexed(location);
+				}
 			} catch (IOException e) {
 				log.trace("ScanFile.run");
 			}
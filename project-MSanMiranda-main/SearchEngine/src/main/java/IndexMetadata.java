@@ -0,0 +1,238 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The size, modification time and content hash of every indexed file, saved
+ * next to a binary index so the next build only reads the files that were
+ * added or changed since.
+ *
+ * A file whose size and modification time are unchanged is taken as unchanged
+ * without reading it. Otherwise its content is hashed, so a file that was only
+ * touched is not read into the index again.
+ *
+ * Saved as a text file with a line per location:
+ *
+ * <pre>
+ * size TAB modified milliseconds TAB SHA-256 hex TAB location
+ * </pre>
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class IndexMetadata {
+
+	/** The metadata of every location */
+	private final TreeMap<String, Entry> entries;
+
+	/** The metadata of the changed locations not indexed yet */
+	private final HashMap<String, Entry> pending;
+
+	/** Basic constructor with no parameter */
+	public IndexMetadata() {
+		this.entries = new TreeMap<String, Entry>();
+		this.pending = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Reads the metadata saved by {@link #write(Path)}, or returns empty metadata
+	 * if the file does not exist.
+	 *
+	 * @param path the metadata file
+	 * @return the metadata read
+	 * @throws IOException if unable to read the file or a line is malformed
+	 */
+	public static IndexMetadata read(Path path) throws IOException {
+		IndexMetadata metadata = new IndexMetadata();
+		if (!Files.exists(path)) {
+			return metadata;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 4);
+				if (fields.length != 4) {
+					throw new IOException("Malformed index metadata line: " + line);
+				}
+				try {
+					metadata.entries.put(fields[3],
+							new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed index metadata line: " + line, e);
+				}
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * Writes the metadata so it can be read with {@link #read(Path)}.
+	 *
+	 * @param path the metadata file
+	 * @throws IOException if unable to write the file
+	 */
+	public synchronized void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (var entry : entries.entrySet()) {
+				Entry value = entry.getValue();
+				writer.write(Long.toString(value.size));
+				writer.write('\t');
+				writer.write(Long.toString(value.modified));
+				writer.write('\t');
+				writer.write(value.hash);
+				writer.write('\t');
+				writer.write(entry.getKey());
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Checks the current metadata of a file, hashing it only if its size or
+	 * modification time changed. A file added or changed is forgotten until
+	 * {@link #indexed(Path)} records it, so a file that fails to be read is read
+	 * again the next time.
+	 *
+	 * @param file the file to check
+	 * @return true if the file was added or its content changed since recorded
+	 * @throws IOException if unable to read the file
+	 */
+	public synchronized boolean update(Path file) throws IOException {
+		String location = file.toString();
+		long size = Files.size(file);
+		long modified = Files.getLastModifiedTime(file).toMillis();
+
+		Entry previous = entries.get(location);
+		if (previous != null && previous.size == size && previous.modified == modified) {
+			return false;
+		}
+
+		Entry current = new Entry(size, modified, hash(file));
+		if (previous != null && previous.hash.equals(current.hash)) {
+			entries.put(location, current);
+			return false;
+		}
+		entries.remove(location);
+		pending.put(location, current);
+		return true;
+	}
+
+	/**
+	 * Records the metadata checked by {@link #update(Path)} of a file once it is
+	 * indexed. Safe to call from many threads at once.
+	 *
+	 * @param file the file indexed
+	 */
+	public synchronized void indexed(Path file) {
+		String location = file.toString();
+		Entry entry = pending.remove(location);
+		if (entry != null) {
+			entries.put(location, entry);
+		}
+	}
+
+	/**
+	 * Removes the metadata of every location not found anymore.
+	 *
+	 * @param found the locations found
+	 * @return the removed locations
+	 */
+	public List<String> retain(Collection<String> found) {
+		List<String> removed = new ArrayList<String>();
+		var iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			String location = iterator.next();
+			if (!found.contains(location)) {
+				removed.add(location);
+				iterator.remove();
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the recorded locations.
+	 *
+	 * @return an unmodifiable view of the recorded locations
+	 */
+	public Set<String> locations() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Function to hash the content of a file with SHA-256
+	 *
+	 * @param file the file to hash
+	 * @return the hash as lowercase hex
+	 * @throws IOException if unable to read the file
+	 */
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream input = Files.newInputStream(file)) {
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "IndexMetadata[locations=" + entries.size() + "]";
+	}
+
+	/**
+	 * The recorded metadata of a single location.
+	 */
+	private static class Entry {
+
+		/** The size in bytes */
+		private final long size;
+
+		/** The modification time in milliseconds */
+		private final long modified;
+
+		/** The SHA-256 hash of the content, as hex */
+		private final String hash;
+
+		/**
+		 * Constructor
+		 *
+		 * @param size     the size in bytes
+		 * @param modified the modification time in milliseconds
+		 * @param hash     the SHA-256 hash of the content, as hex
+		 */
+		public Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+}
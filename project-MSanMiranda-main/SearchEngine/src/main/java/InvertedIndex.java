@@ -4,12 +4,21 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
 
 /**
  * A data structure to store an indexes Unique Words with every appearance in
@@ -28,10 +37,24 @@ public class InvertedIndex {
 	/** Data Structure to hold individual counts */
 	private final TreeMap<String, Integer> countMap;
 
+	/** The cache of search results, or null to always search */
+	private QueryCache cache;
+
 	/** Basic constructor with no parameter */
 	public InvertedIndex() {
 		this.map = new TreeMap<String, TreeMap<String, TreeSet<Integer>>>();
 		this.countMap = new TreeMap<String, Integer>();
+		this.cache = null;
+	}
+
+	/**
+	 * Function to put a cache of search results in front of the search functions.
+	 * Must be called before the index is shared with other threads.
+	 *
+	 * @param cache the cache to use, or null to always search
+	 */
+	public void setCache(QueryCache cache) {
+		this.cache = cache;
 	}
 
 	/* Contains Function */
@@ -199,7 +222,7 @@ public class InvertedIndex {
 	 * @return total amount of locations referenced by a CountIndex
 	 */
 	public Set<String> keySetCount() {
-		return Collections.unmodifiableSet(map.keySet());
+		return Collections.unmodifiableSet(countMap.keySet());
 	}
 
 	/**
@@ -232,38 +255,254 @@ public class InvertedIndex {
 		if (!countMap.containsKey(location) || countMap.get(location) < index) {
 			countMap.put(location, index);
 		}
+		changed(word, location);
+	}
+
+	/**
+	 * Function to record every word of a document at once, the first word at
+	 * position 1. The positions of each word are grouped first, so each word is
+	 * looked up once per document instead of once per position, and the count of
+	 * the location is updated once.
+	 *
+	 * @param location the location of the document
+	 * @param words    the words of the document, in order
+	 *
+	 * @see #addIndex(String, String, Integer)
+	 */
+	public void addDocument(String location, List<String> words) {
+		if (words.isEmpty()) {
+			return;
+		}
+
+		for (var entry : positions(words).entrySet()) {
+			var indexes = map.computeIfAbsent(entry.getKey(), key -> new TreeMap<String, TreeSet<Integer>>())
+					.putIfAbsent(location, entry.getValue());
+			if (indexes != null) {
+				indexes.addAll(entry.getValue());
+			}
+		}
+		countMap.merge(location, words.size(), Math::max);
+		changed(words, location);
 	}
 
 	/**
-	 * A function to combine 2 InvertedIndex data
+	 * Function to group the positions of each word of a document, the first word
+	 * at position 1
+	 *
+	 * @param words the words of the document, in order
+	 * @return the positions of each word
+	 */
+	protected static HashMap<String, TreeSet<Integer>> positions(List<String> words) {
+		HashMap<String, TreeSet<Integer>> positions = new HashMap<String, TreeSet<Integer>>();
+		int index = 1;
+		for (String word : words) {
+			positions.computeIfAbsent(word, key -> new TreeSet<Integer>()).add(index++);
+		}
+		return positions;
+	}
+
+	/**
+	 * A function to combine 2 InvertedIndex data. The data of the other index is
+	 * read through its getter-like functions and copied, so it can be any kind of
+	 * index and is left as it was.
 	 * 
 	 * @param other another InvertedIndex
+	 *
+	 * @see #moveAll(InvertedIndex)
 	 */
 	public void addAll(InvertedIndex other) {
-		Set<String> words = other.map.keySet();
-		Set<String> locations;
-		for (String word : words) {
-			if (!map.containsKey(word)) {
-				this.map.put(word, other.map.get(word));
-			} else {
-				locations = other.map.get(word).keySet();
-				for (String location : locations) {
-					if (!map.get(word).containsKey(location)) {
-						this.map.get(word).put(location, other.map.get(word).get(location));
-					} else {
-						this.map.get(word).get(location).addAll(other.map.get(word).get(location));
-					}
+		for (String word : other.getWordSet()) {
+			var locations = map.computeIfAbsent(word, key -> new TreeMap<String, TreeSet<Integer>>());
+			for (String location : other.getLocationSet(word)) {
+				locations.computeIfAbsent(location, key -> new TreeSet<Integer>())
+						.addAll(other.getIndexSet(word, location));
+			}
+		}
+		for (String location : other.keySetCount()) {
+			countMap.merge(location, other.getCount(location), Math::max);
+		}
+		changed(other);
+	}
+
+	/**
+	 * A function to combine a local InvertedIndex into this one by moving its data
+	 * instead of copying it, for callers done with the other index. Its location
+	 * maps and position sets become part of this index, so the other index must
+	 * not be used afterwards. Indexes not stored in the maps of this class, on
+	 * either side, are combined by {@link #addAll(InvertedIndex)} instead.
+	 *
+	 * @param other a local InvertedIndex, not used afterwards
+	 *
+	 * @see #mergeWords(InvertedIndex, String, int)
+	 * @see #mergeCounts(InvertedIndex)
+	 */
+	protected void moveAll(InvertedIndex other) {
+		if (getClass() != InvertedIndex.class || other.getClass() != InvertedIndex.class) {
+			addAll(other);
+			return;
+		}
+		mergeWords(other, null, Integer.MAX_VALUE);
+		mergeCounts(other);
+		changed(other);
+	}
+
+	/**
+	 * Function to move a chunk of the words of another index into this one, so a
+	 * lock can be released between chunks. Both word maps are sorted, so the words
+	 * already in this index are found by walking both maps in order at once
+	 * instead of looking each word up; a word not in this index takes the
+	 * locations of the other index as they are, and when a location is in both
+	 * the smaller position set is added to the larger one. Merging into an empty
+	 * index takes every word at once when they all fit in the chunk.
+	 *
+	 * @param other the local index to move from, stored in the maps of this class
+	 * @param from  the first word to move, or null to start at the first word
+	 * @param chunk the most words to move
+	 * @return the first word not moved yet, or null once every word is moved
+	 */
+	protected String mergeWords(InvertedIndex other, String from, int chunk) {
+		if (from == null && map.isEmpty() && other.map.size() <= chunk) {
+			map.putAll(other.map);
+			return null;
+		}
+
+		var theirs = (from == null ? other.map : other.map.tailMap(from, true)).entrySet().iterator();
+		Iterator<Map.Entry<String, TreeMap<String, TreeSet<Integer>>>> mine = null;
+		Map.Entry<String, TreeMap<String, TreeSet<Integer>>> current = null;
+		ArrayList<Map.Entry<String, TreeMap<String, TreeSet<Integer>>>> added = new ArrayList<>();
+		String next = null;
+		int moved = 0;
+
+		while (theirs.hasNext()) {
+			var entry = theirs.next();
+			String word = entry.getKey();
+			if (moved++ == chunk) {
+				next = word;
+				break;
+			}
+
+			if (mine == null) {
+				mine = map.tailMap(word, true).entrySet().iterator();
+				current = mine.hasNext() ? mine.next() : null;
+			}
+			while (current != null && current.getKey().compareTo(word) < 0) {
+				current = mine.hasNext() ? mine.next() : null;
+			}
+
+			if (current != null && current.getKey().equals(word)) {
+				for (var location : entry.getValue().entrySet()) {
+					current.getValue().merge(location.getKey(), location.getValue(), InvertedIndex::mergeIndexes);
 				}
+			} else {
+				added.add(entry);
 			}
 		}
-		locations = other.countMap.keySet();
-		for (String location : locations) {
-			if (!this.countMap.containsKey(location)) {
-				this.countMap.put(location, other.countMap.get(location));
-			} else if(this.countMap.get(location) < other.countMap.get(location)) {
-				this.countMap.put(location, other.countMap.get(location));
+
+		for (var entry : added) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return next;
+	}
+
+	/**
+	 * Function to combine the position sets of a word at a location, adding the
+	 * smaller set to the larger one
+	 *
+	 * @param mine   the positions in this index
+	 * @param theirs the positions in the other index
+	 * @return the combined positions
+	 */
+	private static TreeSet<Integer> mergeIndexes(TreeSet<Integer> mine, TreeSet<Integer> theirs) {
+		if (mine.size() < theirs.size()) {
+			theirs.addAll(mine);
+			return theirs;
+		}
+		mine.addAll(theirs);
+		return mine;
+	}
+
+	/**
+	 * Function to combine the counts of another index into this one, keeping the
+	 * largest count of each location
+	 *
+	 * @param other the local index to combine from, stored in the maps of this class
+	 */
+	protected void mergeCounts(InvertedIndex other) {
+		for (var entry : other.countMap.entrySet()) {
+			countMap.merge(entry.getKey(), entry.getValue(), Math::max);
+		}
+	}
+
+	/* Data-Removing Functions */
+
+	/**
+	 * Function to remove every word recorded at a location together with its
+	 * count, so the location can be indexed again or dropped. Words found at no
+	 * other location are removed as well.
+	 *
+	 * @param location the location to remove
+	 * @return true if the location was in the index
+	 */
+	public boolean removeLocation(String location) {
+		boolean found = countMap.remove(location) != null;
+		var iterator = map.values().iterator();
+		while (iterator.hasNext()) {
+			var locations = iterator.next();
+			if (locations.remove(location) != null) {
+				found = true;
+				if (locations.isEmpty()) {
+					iterator.remove();
+				}
 			}
 		}
+		if (found) {
+			changed(List.of(), location);
+		}
+		return found;
+	}
+
+	/**
+	 * Function to remove the cached search results that may have changed after a
+	 * word was added at a location. Called by every function adding to the index.
+	 *
+	 * @param word     the added word
+	 * @param location the location the word was added at
+	 *
+	 * @see QueryCache#invalidate(String, String)
+	 */
+	protected void changed(String word, String location) {
+		if (cache != null) {
+			cache.invalidate(word, location);
+		}
+	}
+
+	/**
+	 * Function to remove the cached search results that may have changed after
+	 * the words of a document were added at its location.
+	 *
+	 * @param words    the added words
+	 * @param location the location of the document
+	 *
+	 * @see QueryCache#invalidate(Collection, Collection)
+	 */
+	protected void changed(Collection<String> words, String location) {
+		if (cache != null) {
+			cache.invalidate(words, List.of(location));
+		}
+	}
+
+	/**
+	 * Function to remove the cached search results that may have changed after
+	 * another index was combined into this one.
+	 *
+	 * @param other the combined index
+	 *
+	 * @see QueryCache#invalidate(Collection, Collection)
+	 */
+	protected void changed(InvertedIndex other) {
+		if (cache != null) {
+			cache.invalidate(other.getWordSet(), other.keySetCount());
+		}
 	}
 
 	/* JSon - String Function */
@@ -295,94 +534,414 @@ public class InvertedIndex {
 		}
 	}
 
+	/**
+	 * Function that takes a path and writes the index as a binary index file,
+	 * which can be opened again without rebuilding the index
+	 *
+	 * @param path the path to write the binary index file
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see MappedInvertedIndex
+	 */
+	public void toBinary(Path path) throws IOException {
+		MappedInvertedIndex.write(this, path);
+	}
+
+	/**
+	 * Function that takes a path and writes the inverted index as JSON in the
+	 * given format
+	 *
+	 * @param path   the path to write the JSON file
+	 * @param format the format to write
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see #toJson(Path)
+	 */
+	public void toJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		if (format == StreamingJsonWriter.Format.LEGACY) {
+			toJson(path);
+			return;
+		}
+		try (StreamingJsonWriter writer = new StreamingJsonWriter(path, format == StreamingJsonWriter.Format.PRETTY)) {
+			writer.beginIndex();
+			writeJson(writer);
+			writer.endIndex();
+		}
+	}
+
+	/**
+	 * Function that takes a path and writes the word counts as JSON in the given
+	 * format
+	 *
+	 * @param path   the path to write the JSON file
+	 * @param format the format to write
+	 * @throws IOException when an IOException occurs
+	 *
+	 * @see #toCountJson(Path)
+	 */
+	public void toCountJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		if (format == StreamingJsonWriter.Format.LEGACY) {
+			toCountJson(path);
+			return;
+		}
+		try (StreamingJsonWriter writer = new StreamingJsonWriter(path, format == StreamingJsonWriter.Format.PRETTY)) {
+			writeCountJson(writer);
+		}
+	}
+
+	/**
+	 * Function to hand every word, location and its positions to the writer, in
+	 * sorted order
+	 *
+	 * @param writer the writer to use
+	 * @throws IOException when an IOException occurs
+	 */
+	protected void writeJson(StreamingJsonWriter writer) throws IOException {
+		for (var entry : map.entrySet()) {
+			writer.word(entry.getKey());
+			for (var location : entry.getValue().entrySet()) {
+				writer.location(location.getKey(), location.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Function to hand the word counts to the writer
+	 *
+	 * @param writer the writer to use
+	 * @throws IOException when an IOException occurs
+	 */
+	protected void writeCountJson(StreamingJsonWriter writer) throws IOException {
+		writer.counts(countMap);
+	}
+
+	/**
+	 * Function to copy the inverted index into a compact index, so it can be
+	 * written while the original keeps changing
+	 *
+	 * @return a copy of the inverted index
+	 */
+	protected InvertedIndex snapshot() {
+		CompactInvertedIndex copy = new CompactInvertedIndex();
+		for (var entry : map.entrySet()) {
+			for (var location : entry.getValue().entrySet()) {
+				copy.addIndexes(entry.getKey(), location.getKey(), location.getValue());
+			}
+		}
+		return copy;
+	}
+
 	/* Search Functions */
 
 	/**
-	 * A Search that calls searchExact and searchPartial based off boolean.
+	 * A Search that looks up every word matching the queries, exactly or as a
+	 * prefix based off boolean.
 	 * 
 	 * @param queries the set of query words
 	 * @param exact   the boolean value for partial or exact searching
 	 * @return a list of search items
 	 *
-	 * @see #searchExact(HashMap, Set, List)
-	 * @see #searchPartial(HashMap, Set, List)
+	 * @see #collect(Set, boolean)
 	 */
 	public List<SearchItem> search(Set<String> queries, boolean exact) {
-		List<SearchItem> results = new ArrayList<SearchItem>();
-		HashMap<String, SearchItem> lookup = new HashMap<String, SearchItem>();
+		return cached(queries, exact, 0, () -> {
+			List<SearchItem> results = collect(queries, exact);
+			Collections.sort(results);
+			return results;
+		});
+	}
 
-		if (exact) {
-			searchExact(lookup, queries, results);
-		} else {
-			searchPartial(lookup, queries, results);
+	/**
+	 * A Search that only returns the best search items, in the same order as
+	 * {@link #search(Set, boolean)}.
+	 *
+	 * @param queries the set of query words
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the maximum amount of search items to return, or 0 for all
+	 * @return a list of at most limit search items
+	 *
+	 * @see #rank(List, int)
+	 */
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit) {
+		return cached(queries, exact, limit, () -> rank(collect(queries, exact), limit));
+	}
+
+	/**
+	 * A Search like {@link #search(Set, boolean, int)} that splits a long list of
+	 * matching words, such as the words starting with a short prefix, into chunks
+	 * looked up in parallel on a fork-join pool. Each chunk counts into its own
+	 * search items, which are merged when the chunks join.
+	 *
+	 * @param queries the set of query words
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the maximum amount of search items to return, or 0 for all
+	 * @param pool    the pool to look up chunks on, or null to search sequentially
+	 * @return a list of at most limit search items
+	 *
+	 * @see SearchTask
+	 */
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit, ForkJoinPool pool) {
+		return cached(queries, exact, limit, () -> fork(queries, exact, limit, pool));
+	}
+
+	/**
+	 * Function to return the cached results of a search, searching and caching
+	 * them if not found. Searches every time without a cache.
+	 *
+	 * @param queries the set of query words
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the maximum amount of search items to return, or 0 for all
+	 * @param search  the search to run if the results are not cached
+	 * @return a list of at most limit search items
+	 *
+	 * @see #setCache(QueryCache)
+	 */
+	private List<SearchItem> cached(Set<String> queries, boolean exact, int limit,
+			Supplier<List<SearchItem>> search) {
+		QueryCache cache = this.cache;
+		if (cache == null) {
+			return search.get();
+		}
+
+		String key = QueryCache.key(queries, exact, limit);
+		List<SearchItem> results = cache.get(key);
+		if (results == null) {
+			long version = cache.version();
+			results = cache.put(key, queries, exact, search.get(), version);
 		}
-		Collections.sort(results);
 		return results;
 	}
 
 	/**
-	 * Function to perform an exact word lookup in the inverted index
+	 * Function to look up the matching words on a fork-join pool, or
+	 * sequentially without one.
 	 *
-	 * @param lookup  the HashMap to reference
 	 * @param queries the set of query words
-	 * @param results the result list to reference
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the maximum amount of search items to return, or 0 for all
+	 * @param pool    the pool to look up chunks on, or null to search sequentially
+	 * @return a list of at most limit search items
 	 *
-	 * @see #searchCore(String, Set, HashMap, List)
+	 * @see #search(Set, boolean, int, ForkJoinPool)
 	 */
-	private void searchExact(HashMap<String, SearchItem> lookup, Set<String> queries, List<SearchItem> results) {
-		Set<String> locationIndex;
+	private List<SearchItem> fork(Set<String> queries, boolean exact, int limit, ForkJoinPool pool) {
+		if (pool == null) {
+			return rank(collect(queries, exact), limit);
+		}
+
+		List<String> words = new ArrayList<String>();
 		for (var word : queries) {
-			if (map.containsKey(word)) {
-				locationIndex = map.get(word).keySet();
-				searchCore(word, locationIndex, lookup, results);
+			words.addAll(matchingWords(word, exact));
+		}
+
+		// about four chunks per thread, so merging does not outweigh the lookups
+		int chunk = Math.max(SearchTask.CHUNK, words.size() / (pool.getParallelism() * 4) + 1);
+		SearchTask task = new SearchTask(words.toArray(new String[0]), 0, words.size(), chunk);
+		HashMap<String, SearchItem> lookup;
+		if (words.size() <= chunk) {
+			lookup = task.compute();
+		} else if (ForkJoinTask.inForkJoinPool()) {
+			// a task started on a pool worker, such as a work queue's, runs on that pool
+			lookup = task.invoke();
+		} else {
+			lookup = pool.invoke(task);
+		}
+		return rank(new ArrayList<SearchItem>(lookup.values()), limit);
+	}
+
+	/**
+	 * Function to sort the search items, keeping only the best ones if there are
+	 * more than the limit. The best items are kept in a heap bounded by the limit,
+	 * so only they are sorted instead of every matching location.
+	 *
+	 * @param results the unsorted search items
+	 * @param limit   the maximum amount of search items to return, or 0 for all
+	 * @return a sorted list of at most limit search items
+	 */
+	private static List<SearchItem> rank(List<SearchItem> results, int limit) {
+		if (limit <= 0 || results.size() <= limit) {
+			Collections.sort(results);
+			return results;
+		}
+
+		// the worst of the best items found so far is at the head
+		PriorityQueue<SearchItem> best = new PriorityQueue<SearchItem>(limit, Collections.reverseOrder());
+		for (var item : results) {
+			if (best.size() < limit) {
+				best.add(item);
+			} else if (item.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(item);
 			}
 		}
+
+		List<SearchItem> top = new ArrayList<SearchItem>(best);
+		Collections.sort(top);
+		return top;
 	}
 
 	/**
-	 * Function to perform an partial word lookup in the inverted index
+	 * Function to create a SearchItem for every location of every word matching
+	 * the queries, unsorted
 	 *
-	 * @param lookup  the HashMap to reference
 	 * @param queries the set of query words
-	 * @param results the result list to reference
+	 * @param exact   the boolean value for partial or exact searching
+	 * @return an unsorted list of search items
 	 *
-	 * @see #searchCore(String, Set, HashMap, List)
+	 * @see #matchingWords(String, boolean)
+	 * @see #searchCore(String, HashMap, List)
 	 */
-	private void searchPartial(HashMap<String, SearchItem> lookup, Set<String> queries, List<SearchItem> results) {
-		Set<String> locationIndex;
+	private List<SearchItem> collect(Set<String> queries, boolean exact) {
+		List<SearchItem> results = new ArrayList<SearchItem>();
+		HashMap<String, SearchItem> lookup = new HashMap<String, SearchItem>();
+
 		for (var word : queries) {
-			for (String indexWord : map.tailMap(word).keySet()) {
-				if (!indexWord.startsWith(word)) {
-					break;
+			for (String indexWord : matchingWords(word, exact)) {
+				searchCore(indexWord, lookup, results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Looks up a range of matching words, splitting it in halves looked up in
+	 * parallel while it is longer than the chunk size, and returns the search
+	 * items by location.
+	 */
+	private class SearchTask extends RecursiveTask<HashMap<String, SearchItem>> {
+
+		/** The smallest amount of words looked up without splitting */
+		private static final int CHUNK = 256;
+
+		/** Unique version identifier, the task is never serialized */
+		private static final long serialVersionUID = 1L;
+
+		/** The matching words */
+		private final String[] words;
+
+		/** The first word of the range */
+		private final int from;
+
+		/** The word after the range */
+		private final int to;
+
+		/** The amount of words looked up without splitting */
+		private final int chunk;
+
+		/**
+		 * Constructor
+		 *
+		 * @param words the matching words
+		 * @param from  the first word of the range
+		 * @param to    the word after the range
+		 * @param chunk the amount of words looked up without splitting
+		 */
+		public SearchTask(String[] words, int from, int to, int chunk) {
+			this.words = words;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected HashMap<String, SearchItem> compute() {
+			if (to - from <= chunk) {
+				HashMap<String, SearchItem> lookup = new HashMap<String, SearchItem>();
+				List<SearchItem> results = new ArrayList<SearchItem>();
+				for (int i = from; i < to; i++) {
+					searchCore(words[i], lookup, results);
+				}
+				return lookup;
+			}
+
+			int middle = (from + to) >>> 1;
+			SearchTask left = new SearchTask(words, from, middle, chunk);
+			left.fork();
+			HashMap<String, SearchItem> right = new SearchTask(words, middle, to, chunk).compute();
+			HashMap<String, SearchItem> lookup = left.join();
+
+			// merges the smaller map into the larger one
+			if (lookup.size() < right.size()) {
+				var swap = lookup;
+				lookup = right;
+				right = swap;
+			}
+			for (var item : right.values()) {
+				var into = lookup.putIfAbsent(item.location, item);
+				if (into != null) {
+					into.add(item.amount);
 				}
-				locationIndex = map.get(indexWord).keySet();
-				searchCore(indexWord, locationIndex, lookup, results);
 			}
+			return lookup;
 		}
 	}
 
 	/**
 	 * Function to create and append SearchItems, adding it to HashMap for lookup
 	 *
-	 * @param word          the word used to create or append a SearchItem
-	 * @param locationIndex the locations where the word was found
-	 * @param lookup        a HashMap to store new SearchItems and append to older
-	 *                      ones
-	 * @param results       the result list to reference
+	 * @param word    the word used to create or append a SearchItem
+	 * @param lookup  a HashMap to store new SearchItems and append to older ones
+	 * @param results the result list to reference
 	 *
+	 * @see #forEachLocation(String, ObjIntConsumer)
 	 */
-	private void searchCore(String word, Set<String> locationIndex, HashMap<String, SearchItem> lookup,
-			List<SearchItem> results) {
-
-		for (var location : locationIndex) {
-			if (!lookup.containsKey(location)) {
-				var item = new SearchItem(location);
+	private void searchCore(String word, HashMap<String, SearchItem> lookup, List<SearchItem> results) {
+		forEachLocation(word, (location, amount) -> {
+			var item = lookup.get(location);
+			if (item == null) {
+				item = new SearchItem(location, locationTotal(location));
 				lookup.put(location, item);
 				results.add(item);
 			}
 
-			lookup.get(location).add(word);
+			item.add(amount);
+		});
+	}
+
+	/* Storage Functions used by search */
+
+	/**
+	 * Function to return the indexed words a query word matches. An exact match
+	 * is the word itself if it is indexed, a partial match is every indexed word
+	 * starting with the query word, in sorted order. Storage engines other than
+	 * the TreeMap override this together with
+	 * {@link #forEachLocation(String, ObjIntConsumer)} and
+	 * {@link #locationTotal(String)} so the search functions work unchanged.
+	 *
+	 * @param query the query word
+	 * @param exact the boolean value for partial or exact matching
+	 * @return the indexed words matching the query word
+	 */
+	protected Collection<String> matchingWords(String query, boolean exact) {
+		if (exact) {
+			return map.containsKey(query) ? Set.of(query) : Set.of();
 		}
+		// no cleaned word contains Character.MAX_VALUE, so this is the prefix range
+		return map.subMap(query, true, query + Character.MAX_VALUE, false).keySet();
+	}
+
+	/**
+	 * Function to hand every location of an indexed word to the action, together
+	 * with how many times the word appears at that location
+	 *
+	 * @param word   the indexed word
+	 * @param action the action taking a location and the amount of indexes there
+	 */
+	protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+		for (var entry : map.get(word).entrySet()) {
+			action.accept(entry.getKey(), entry.getValue().size());
+		}
+	}
+
+	/**
+	 * Function to get the total number of words at a location without any of the
+	 * locking done by subclasses in {@link #getCount(String)}
+	 *
+	 * @param location the location to check
+	 * @return total number of words at location
+	 */
+	protected int locationTotal(String location) {
+		return countMap.getOrDefault(location, 0);
 	}
 
 	/**
@@ -403,6 +962,9 @@ public class InvertedIndex {
 		/** The percentage of words that matched */
 		private double score;
 
+		/** The total amount of words at location */
+		private final int total;
+
 		/** Dirty Bit for score calculation */
 		private boolean calculated;
 
@@ -410,9 +972,11 @@ public class InvertedIndex {
 		 * Constructor
 		 *
 		 * @param location where the word was found
+		 * @param total    the total amount of words at location
 		 */
-		public SearchItem(String location) {
+		public SearchItem(String location, int total) {
 			this.location = location;
+			this.total = total;
 			this.amount = 0;
 			this.score = 0d;
 			this.calculated = false;
@@ -451,11 +1015,11 @@ public class InvertedIndex {
 		/**
 		 * Function to add to count
 		 * 
-		 * @param word amount to add via InvertedIndex search
+		 * @param amount amount to add via InvertedIndex search
 		 */
-		private void add(String word) {
+		private void add(int amount) {
 			calculated = false;
-			amount += map.get(word).get(location).size();
+			this.amount += amount;
 		}
 
 		/**
@@ -465,7 +1029,7 @@ public class InvertedIndex {
 			if (this.amount == 0) {
 				this.score = 0d;
 			} else {
-				this.score = Double.valueOf(amount) / countMap.get(location);
+				this.score = Double.valueOf(amount) / total;
 			}
 		}
 
@@ -2,6 +2,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,13 +21,25 @@ public class InvertedIndexMulti extends InvertedIndex {
 	/** A logger specifically for this class. */
 	private static final Logger log = LogManager.getLogger(InvertedIndexMulti.class);
 
+	/** The most words merged by moveAll while holding the write lock */
+	public static final int MERGE_CHUNK = 4096;
+
 	/** The lock used to protect concurrent access to the underlying set. */
 	private final SimpleReadWriteLock lock;
 	
 	/** Basic constructor with no parameter */
 	public InvertedIndexMulti() {
+		this(new SimpleReadWriteLock());
+	}
+
+	/**
+	 * Constructor with the lock to protect the index with
+	 *
+	 * @param lock the lock to use, like a {@link FairReadWriteLock}
+	 */
+	public InvertedIndexMulti(SimpleReadWriteLock lock) {
 		super();
-		this.lock = new SimpleReadWriteLock();
+		this.lock = lock;
 	}
 
 	/* Contains Function */
@@ -179,8 +192,17 @@ public class InvertedIndexMulti extends InvertedIndex {
 	}
 
 	@Override
-	public void addAll(InvertedIndex other) {
+	public void addDocument(String location, List<String> words) {
+		lock.writeLock().lock();
+		try {
+			super.addDocument(location, words);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 
+	@Override
+	public void addAll(InvertedIndex other) {
 		log.trace("addAll.lock.writeLock.lock()");
 		lock.writeLock().lock();
 		try {
@@ -188,8 +210,50 @@ public class InvertedIndexMulti extends InvertedIndex {
 		} finally {
 			lock.writeLock().unlock();
 		}
+	}
 
-	
+	/**
+	 * Moves the words of the other index in chunks of {@link #MERGE_CHUNK},
+	 * releasing the write lock between chunks so searches and other workers are
+	 * not blocked for a whole merge. The counts are moved with the first chunk, so
+	 * every location found between chunks has its count, but a search between
+	 * chunks may see only part of the merged words.
+	 */
+	@Override
+	protected void moveAll(InvertedIndex other) {
+		if (other.getClass() != InvertedIndex.class) {
+			addAll(other);
+			return;
+		}
+
+		String next = null;
+		boolean first = true;
+		do {
+			log.trace("moveAll.lock.writeLock.lock()");
+			lock.writeLock().lock();
+			try {
+				if (first) {
+					mergeCounts(other);
+					first = false;
+				}
+				next = mergeWords(other, next, MERGE_CHUNK);
+				if (next == null) {
+					changed(other);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} while (next != null);
+	}
+
+	@Override
+	public boolean removeLocation(String location) {
+		lock.writeLock().lock();
+		try {
+			return super.removeLocation(location);
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/* JSon - String Function */
@@ -214,6 +278,40 @@ public class InvertedIndexMulti extends InvertedIndex {
 		}
 	}
 
+	/**
+	 * Writes the index from a snapshot taken under the read lock, so writers are
+	 * only blocked while copying and not while writing the file.
+	 *
+	 * @param path   the path to write the JSON file
+	 * @param format the format to write
+	 * @throws IOException when an IOException occurs
+	 */
+	@Override
+	public void toJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		InvertedIndex copy;
+		lock.readLock().lock();
+		try {
+			copy = snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+		copy.toJson(path, format);
+	}
+
+	@Override
+	public void toCountJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		if (format == StreamingJsonWriter.Format.LEGACY) {
+			toCountJson(path);
+			return;
+		}
+		lock.readLock().lock();
+		try {
+			super.toCountJson(path, format);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	/* Search Functions */
 
 	@Override
@@ -225,4 +323,24 @@ public class InvertedIndexMulti extends InvertedIndex {
 			lock.readLock().unlock();
 		}
 	}
+
+	@Override
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit, ForkJoinPool pool) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact, limit, pool);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 }
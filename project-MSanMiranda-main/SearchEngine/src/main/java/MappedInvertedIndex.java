@@ -0,0 +1,794 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A read-only InvertedIndex served straight from a binary index file through
+ * memory mapping, so a saved index can be searched right after opening it
+ * without reading its words and postings onto the heap. Only the locations and
+ * their word counts are loaded when opening.
+ *
+ * The file is written by {@link #write(InvertedIndex, Path)} and made of four
+ * sections, with every number stored as a 4-byte big-endian int at a 4-byte
+ * aligned offset and every long as two such ints:
+ *
+ * <pre>
+ * header:    magic, version, words, locations, locations offset, table offset
+ * postings:  per word, sorted: location count, then per location, sorted:
+ *            location id, index count, indexes
+ * locations: per location id: word count, string
+ * table:     per word, sorted: string offset, postings offset; then strings
+ * </pre>
+ *
+ * where a string is its UTF-8 byte length followed by the bytes, padded to a
+ * multiple of 4.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class MappedInvertedIndex extends InvertedIndex {
+
+	/** The first int of every binary index file */
+	private static final int MAGIC = 0x53454958;
+
+	/** The version of the binary index format */
+	private static final int VERSION = 1;
+
+	/** The size of the header in bytes */
+	private static final int HEADER = 32;
+
+	/** The size of a word table entry in bytes */
+	private static final int ENTRY = 16;
+
+	/** The amount of bits addressed by a single mapped chunk of the file */
+	private static final int CHUNK_BITS = 30;
+
+	/** The size in bytes of a single mapped chunk of the file */
+	private static final long CHUNK = 1L << CHUNK_BITS;
+
+	/** The file mapped in chunks, since a single mapping is limited to 2GB */
+	private final ByteBuffer[] chunks;
+
+	/** The amount of words in the index */
+	private final int words;
+
+	/** The offset of the word table */
+	private final long table;
+
+	/** The locations, by location id */
+	private final String[] locations;
+
+	/** The word count of every location, by location id */
+	private final int[] counts;
+
+	/** Data Structure to hold Location to location id */
+	private final HashMap<String, Integer> locationIds;
+
+	/**
+	 * Opens a binary index file written by {@link #write(InvertedIndex, Path)}.
+	 *
+	 * @param path the binary index file
+	 * @throws IOException if unable to read the file or it is not a binary index
+	 */
+	public MappedInvertedIndex(Path path) throws IOException {
+		super();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			chunks = new ByteBuffer[(int) ((size + CHUNK - 1) / CHUNK)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = i * CHUNK;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK, size - start));
+			}
+		}
+
+		if (chunks.length == 0 || getInt(0) != MAGIC || getInt(4) != VERSION) {
+			throw new IOException("Not a binary index file: " + path);
+		}
+
+		this.words = getInt(8);
+		this.locations = new String[getInt(12)];
+		this.counts = new int[locations.length];
+		this.locationIds = new HashMap<String, Integer>();
+		this.table = getLong(24);
+
+		long offset = getLong(16);
+		for (int i = 0; i < locations.length; i++) {
+			counts[i] = getInt(offset);
+			locations[i] = getString(offset + 4);
+			locationIds.put(locations[i], i);
+			offset += 8 + stringSize(locations[i]);
+		}
+	}
+
+	/* Contains Function */
+
+	@Override
+	public boolean containsWord(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean containsLocationCount(String location) {
+		return locationIds.containsKey(location);
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		return postings(word, location) >= 0;
+	}
+
+	@Override
+	public boolean containsIndex(String word, String location, Integer index) {
+		long offset = postings(word, location);
+		if (offset < 0 || index == null) {
+			return false;
+		}
+		int n = getInt(offset + 4);
+		for (int i = 0; i < n; i++) {
+			if (getInt(offset + 8 + 4L * i) == index) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Size-like functions */
+
+	@Override
+	public int inWordLocations(String word) {
+		int i = find(word);
+		return i < 0 ? 0 : getInt(postingsOffset(i));
+	}
+
+	@Override
+	public int inWordIndexes(String word) {
+		int[] total = new int[1];
+		if (containsWord(word)) {
+			forEachLocation(word, (location, amount) -> total[0] += amount);
+		}
+		return total[0];
+	}
+
+	@Override
+	public int inWordinLocationIndexes(String word, String location) {
+		long offset = postings(word, location);
+		return offset < 0 ? 0 : getInt(offset + 4);
+	}
+
+	@Override
+	public int uniqueWords() {
+		return words;
+	}
+
+	/* Getter-Like Functions */
+
+	@Override
+	public Set<String> getWordSet() {
+		return new WordSet(0, words);
+	}
+
+	@Override
+	public Set<String> getLocationSet(String word) {
+		int i = find(word);
+		if (i < 0) {
+			return null;
+		}
+		TreeSet<String> set = new TreeSet<String>();
+		forEachLocation(i, (location, amount) -> set.add(location));
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<Integer> getIndexSet(String word, String location) {
+		long offset = postings(word, location);
+		if (offset < 0) {
+			return null;
+		}
+		TreeSet<Integer> set = new TreeSet<Integer>();
+		int n = getInt(offset + 4);
+		for (int i = 0; i < n; i++) {
+			set.add(getInt(offset + 8 + 4L * i));
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<String> keySetCount() {
+		return Collections.unmodifiableSet(new TreeSet<String>(locationIds.keySet()));
+	}
+
+	@Override
+	public Integer getCount(String location) {
+		return locationTotal(location);
+	}
+
+	/* Data-Adding Functions */
+
+	/**
+	 * Not supported, a mapped index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addIndex(String word, String location, Integer index) {
+		throw new UnsupportedOperationException("A mapped index is read-only");
+	}
+
+	/**
+	 * Not supported, a mapped index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addDocument(String location, List<String> words) {
+		throw new UnsupportedOperationException("A mapped index is read-only");
+	}
+
+	/**
+	 * Not supported, a mapped index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		throw new UnsupportedOperationException("A mapped index is read-only");
+	}
+
+	/**
+	 * Not supported, a mapped index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean removeLocation(String location) {
+		throw new UnsupportedOperationException("A mapped index is read-only");
+	}
+
+	/* JSon - String Function */
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.doubleNestedArray(getWordSet(), this::postingsMap, writer, 0);
+		}
+	}
+
+	@Override
+	public void toCountJson(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.asObject(countMap(), writer, 0);
+		}
+	}
+
+	@Override
+	protected void writeJson(StreamingJsonWriter writer) throws IOException {
+		int[] positions = new int[16];
+		for (int i = 0; i < words; i++) {
+			writer.word(word(i));
+			long offset = postingsOffset(i);
+			int n = getInt(offset);
+			offset += 4;
+			for (int j = 0; j < n; j++) {
+				int amount = getInt(offset + 4);
+				if (amount > positions.length) {
+					positions = new int[Math.max(amount, positions.length * 2)];
+				}
+				for (int k = 0; k < amount; k++) {
+					positions[k] = getInt(offset + 8 + 4L * k);
+				}
+				writer.location(locations[getInt(offset)], positions, amount);
+				offset += 8 + 4L * amount;
+			}
+		}
+	}
+
+	@Override
+	protected void writeCountJson(StreamingJsonWriter writer) throws IOException {
+		writer.counts(countMap());
+	}
+
+	/**
+	 * Function to build the sorted map of locations to word counts
+	 *
+	 * @return a sorted map of locations to word counts
+	 */
+	private TreeMap<String, Integer> countMap() {
+		TreeMap<String, Integer> countMap = new TreeMap<String, Integer>();
+		for (int i = 0; i < locations.length; i++) {
+			countMap.put(locations[i], counts[i]);
+		}
+		return countMap;
+	}
+
+	/* Storage Functions used by search */
+
+	@Override
+	protected Collection<String> matchingWords(String query, boolean exact) {
+		if (exact) {
+			return containsWord(query) ? Set.of(query) : Set.of();
+		}
+
+		List<String> matches = new ArrayList<String>();
+		for (int i = lowerBound(query); i < words; i++) {
+			String word = word(i);
+			if (!word.startsWith(query)) {
+				break;
+			}
+			matches.add(word);
+		}
+		return matches;
+	}
+
+	@Override
+	protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+		int i = find(word);
+		if (i >= 0) {
+			forEachLocation(i, action);
+		}
+	}
+
+	@Override
+	protected int locationTotal(String location) {
+		Integer id = locationIds.get(location);
+		return id == null ? 0 : counts[id];
+	}
+
+	/**
+	 * Function to hand every location of the word at position i of the word
+	 * table to the action, together with the amount of indexes there
+	 *
+	 * @param i      the position of the word in the word table
+	 * @param action the action taking a location and the amount of indexes there
+	 */
+	private void forEachLocation(int i, ObjIntConsumer<String> action) {
+		long offset = postingsOffset(i);
+		int n = getInt(offset);
+		offset += 4;
+		for (int j = 0; j < n; j++) {
+			int amount = getInt(offset + 4);
+			action.accept(locations[getInt(offset)], amount);
+			offset += 8 + 4L * amount;
+		}
+	}
+
+	/**
+	 * Function to build the location to indexes map of a single word, in the same
+	 * layout {@link InvertedIndex} keeps it
+	 *
+	 * @param word the word to build the map for
+	 * @return a sorted map of locations to sorted indexes
+	 */
+	private TreeMap<String, TreeSet<Integer>> postingsMap(String word) {
+		TreeMap<String, TreeSet<Integer>> map = new TreeMap<String, TreeSet<Integer>>();
+		long offset = postingsOffset(find(word));
+		int n = getInt(offset);
+		offset += 4;
+		for (int j = 0; j < n; j++) {
+			int amount = getInt(offset + 4);
+			TreeSet<Integer> indexes = new TreeSet<Integer>();
+			for (int k = 0; k < amount; k++) {
+				indexes.add(getInt(offset + 8 + 4L * k));
+			}
+			map.put(locations[getInt(offset)], indexes);
+			offset += 8 + 4L * amount;
+		}
+		return map;
+	}
+
+	/* Word table lookups */
+
+	/**
+	 * Function to return the word at position i of the word table
+	 *
+	 * @param i the position in the word table
+	 * @return the word
+	 */
+	private String word(int i) {
+		return getString(getLong(table + (long) ENTRY * i));
+	}
+
+	/**
+	 * Function to return the postings offset of the word at position i of the
+	 * word table
+	 *
+	 * @param i the position in the word table
+	 * @return the offset of the word's postings
+	 */
+	private long postingsOffset(int i) {
+		return getLong(table + (long) ENTRY * i + 8);
+	}
+
+	/**
+	 * Function to find the position of the first word in the word table that is
+	 * not less than the given word
+	 *
+	 * @param word the word to look for
+	 * @return the position of the first word not less than the given word
+	 */
+	private int lowerBound(String word) {
+		int low = 0;
+		int high = words;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (word(middle).compareTo(word) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Function to find the position of a word in the word table
+	 *
+	 * @param word the word to look for
+	 * @return the position of the word, or -1 if not found
+	 */
+	private int find(String word) {
+		int i = lowerBound(word);
+		return i < words && word(i).equals(word) ? i : -1;
+	}
+
+	/**
+	 * Function to find the entry of a location in the postings of a word
+	 *
+	 * @param word     the word to look for
+	 * @param location the location to look for
+	 * @return the offset of the location's entry, or -1 if not found
+	 */
+	private long postings(String word, String location) {
+		int i = find(word);
+		Integer id = locationIds.get(location);
+		if (i < 0 || id == null) {
+			return -1;
+		}
+
+		long offset = postingsOffset(i);
+		int n = getInt(offset);
+		offset += 4;
+		for (int j = 0; j < n; j++) {
+			int current = getInt(offset);
+			if (current == id) {
+				return offset;
+			}
+			if (current > id) {
+				break;
+			}
+			offset += 8 + 4L * getInt(offset + 4);
+		}
+		return -1;
+	}
+
+	/* Reading from the mapped file */
+
+	/**
+	 * Function to read the int at an offset of the file
+	 *
+	 * @param offset the 4-byte aligned offset
+	 * @return the int at the offset
+	 */
+	private int getInt(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & (CHUNK - 1)));
+	}
+
+	/**
+	 * Function to read the long stored as two ints at an offset of the file
+	 *
+	 * @param offset the 4-byte aligned offset
+	 * @return the long at the offset
+	 */
+	private long getLong(long offset) {
+		return ((long) getInt(offset) << 32) | (getInt(offset + 4) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Function to read the string at an offset of the file
+	 *
+	 * @param offset the 4-byte aligned offset
+	 * @return the string at the offset
+	 */
+	private String getString(long offset) {
+		byte[] bytes = new byte[getInt(offset)];
+		offset += 4;
+		int copied = 0;
+		while (copied < bytes.length) {
+			ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+			int start = (int) (offset & (CHUNK - 1));
+			int length = Math.min(bytes.length - copied, chunk.limit() - start);
+			chunk.get(start, bytes, copied, length);
+			copied += length;
+			offset += length;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Function to return the size a string takes in the file, not counting its
+	 * length
+	 *
+	 * @param text the string
+	 * @return the size of the string's bytes, padded to a multiple of 4
+	 */
+	private static int stringSize(String text) {
+		return (text.getBytes(StandardCharsets.UTF_8).length + 3) & ~3;
+	}
+
+	/* Writing the binary index file */
+
+	/**
+	 * Writes any InvertedIndex as a binary index file that can be opened with
+	 * {@link #MappedInvertedIndex(Path)}. The file is written next to the path
+	 * first and then moved over it, so an index still mapped from the path, such
+	 * as the one being written, keeps reading the old file.
+	 *
+	 * @param index the index to write
+	 * @param path  the file to write
+	 * @throws IOException if unable to write the file
+	 */
+	public static void write(InvertedIndex index, Path path) throws IOException {
+		Path absolute = path.toAbsolutePath();
+		Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		try {
+			writeFile(index, temporary);
+			Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Function to write an index as a binary index file, replacing the file
+	 *
+	 * @param index the index to write
+	 * @param path  the file to write
+	 * @throws IOException if unable to write the file
+	 */
+	private static void writeFile(InvertedIndex index, Path path) throws IOException {
+		TreeSet<String> sorted = new TreeSet<String>();
+		for (String word : index.getWordSet()) {
+			sorted.addAll(index.getLocationSet(word));
+		}
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		for (String location : sorted) {
+			ids.put(location, ids.size());
+		}
+
+		ArrayList<String> words = new ArrayList<String>(index.getWordSet());
+		long[] postings = new long[words.size()];
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output output = new Output(channel);
+			output.skip(HEADER);
+
+			for (int i = 0; i < postings.length; i++) {
+				String word = words.get(i);
+				postings[i] = output.position();
+				Set<String> locations = index.getLocationSet(word);
+				output.putInt(locations.size());
+				for (String location : locations) {
+					Set<Integer> indexes = index.getIndexSet(word, location);
+					output.putInt(ids.get(location));
+					output.putInt(indexes.size());
+					for (Integer position : indexes) {
+						output.putInt(position);
+					}
+				}
+			}
+
+			long locationsOffset = output.position();
+			for (String location : sorted) {
+				output.putInt(index.getCount(location));
+				output.putString(location);
+			}
+
+			long[] strings = new long[words.size()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = output.position();
+				output.putString(words.get(i));
+			}
+
+			long tableOffset = output.position();
+			for (int i = 0; i < strings.length; i++) {
+				output.putLong(strings[i]);
+				output.putLong(postings[i]);
+			}
+			output.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putInt(MAGIC).putInt(VERSION).putInt(words.size()).putInt(sorted.size());
+			header.putInt((int) (locationsOffset >>> 32)).putInt((int) locationsOffset);
+			header.putInt((int) (tableOffset >>> 32)).putInt((int) tableOffset);
+			header.flip();
+			channel.write(header, 0);
+		}
+	}
+
+	/**
+	 * Buffers the ints and strings written to a binary index file.
+	 */
+	private static class Output {
+
+		/** The channel to write to */
+		private final FileChannel channel;
+
+		/** The buffer holding data not yet written to the channel */
+		private final ByteBuffer buffer;
+
+		/** The amount of bytes flushed to the channel */
+		private long flushed;
+
+		/**
+		 * Constructor
+		 *
+		 * @param channel the channel to write to
+		 */
+		public Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(1 << 20);
+			this.flushed = 0;
+		}
+
+		/**
+		 * Returns the offset in the file of the next byte written
+		 *
+		 * @return the current offset
+		 */
+		public long position() {
+			return flushed + buffer.position();
+		}
+
+		/**
+		 * Writes zeros, such as room for the header
+		 *
+		 * @param bytes the amount of zero bytes to write
+		 * @throws IOException if unable to write
+		 */
+		public void skip(int bytes) throws IOException {
+			for (int i = 0; i < bytes; i += 4) {
+				putInt(0);
+			}
+		}
+
+		/**
+		 * Writes an int
+		 *
+		 * @param value the int to write
+		 * @throws IOException if unable to write
+		 */
+		public void putInt(int value) throws IOException {
+			if (buffer.remaining() < 4) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		/**
+		 * Writes a long as two ints
+		 *
+		 * @param value the long to write
+		 * @throws IOException if unable to write
+		 */
+		public void putLong(long value) throws IOException {
+			putInt((int) (value >>> 32));
+			putInt((int) value);
+		}
+
+		/**
+		 * Writes a string as its UTF-8 byte length and bytes, padded to a multiple of
+		 * 4 bytes
+		 *
+		 * @param text the string to write
+		 * @throws IOException if unable to write
+		 */
+		public void putString(String text) throws IOException {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			int padded = (bytes.length + 3) & ~3;
+			if (buffer.remaining() < padded) {
+				flush();
+			}
+			if (buffer.remaining() < padded) {
+				channel.write(ByteBuffer.wrap(Arrays.copyOf(bytes, padded)));
+				flushed += padded;
+				return;
+			}
+			buffer.put(bytes);
+			for (int i = bytes.length; i < padded; i++) {
+				buffer.put((byte) 0);
+			}
+		}
+
+		/**
+		 * Writes the buffered data to the channel
+		 *
+		 * @throws IOException if unable to write
+		 */
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				flushed += channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * A sorted, read-only view of a range of the word table.
+	 */
+	private class WordSet extends AbstractSet<String> {
+
+		/** The first position of the range */
+		private final int from;
+
+		/** The position after the range */
+		private final int to;
+
+		/**
+		 * Constructor
+		 *
+		 * @param from the first position of the range
+		 * @param to   the position after the range
+		 */
+		public WordSet(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				/** The next position to return */
+				private int next = from;
+
+				@Override
+				public boolean hasNext() {
+					return next < to;
+				}
+
+				@Override
+				public String next() {
+					if (next >= to) {
+						throw new NoSuchElementException();
+					}
+					return word(next++);
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof String)) {
+				return false;
+			}
+			int i = find((String) o);
+			return i >= from && i < to;
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
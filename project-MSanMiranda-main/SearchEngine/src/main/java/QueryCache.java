@@ -0,0 +1,398 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of search results in front of an inverted index, keyed on the set of
+ * query words, exact or partial matching and the result limit. The least
+ * recently used results are evicted once the total weight of the cached results
+ * passes the capacity, where the weight of a result is its amount of search
+ * items plus one.
+ *
+ * Results are invalidated when the index changes under them: adding a word
+ * removes the results of the queries it matches, exactly or as a prefix, and
+ * adding to a location removes the results scored with that location's total.
+ *
+ * Keeps counters for hits, misses, evictions and invalidations, so the hit rate
+ * can be seen.
+ *
+ * @see InvertedIndex#setCache(QueryCache)
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class QueryCache {
+
+	/** The default maximum total weight of the cached results */
+	public static final int DEFAULT_CAPACITY = 100_000;
+
+	/** The cached results by key, least recently used first */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/** The keys of the exact results by query word */
+	private final HashMap<String, Set<String>> exactWords;
+
+	/** The keys of the partial results by query word */
+	private final HashMap<String, Set<String>> partialWords;
+
+	/** The keys of the results by the locations found in them */
+	private final HashMap<String, Set<String>> locations;
+
+	/** The maximum total weight of the cached results */
+	private final long capacity;
+
+	/** The total weight of the cached results */
+	private long weight;
+
+	/** The amount of cached results, read without synchronizing by writers */
+	private volatile int size;
+
+	/**
+	 * Incremented on every change to the index, so a result searched while the
+	 * index changed is not cached
+	 */
+	private final AtomicLong version;
+
+	/** The number of searches answered from the cache */
+	private long hits;
+
+	/** The number of searches not found in the cache */
+	private long misses;
+
+	/** The number of results evicted to stay under the capacity */
+	private long evictions;
+
+	/** The number of results removed because the index changed */
+	private long invalidations;
+
+	/** Constructor with the default capacity */
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity the maximum total weight of the cached results
+	 */
+	public QueryCache(long capacity) {
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.exactWords = new HashMap<String, Set<String>>();
+		this.partialWords = new HashMap<String, Set<String>>();
+		this.locations = new HashMap<String, Set<String>>();
+		this.capacity = capacity;
+		this.weight = 0;
+		this.size = 0;
+		this.version = new AtomicLong();
+	}
+
+	/**
+	 * Returns the key of a search.
+	 *
+	 * @param queries the set of query words
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the maximum amount of search items, or 0 for all
+	 * @return the key of the search
+	 */
+	public static String key(Set<String> queries, boolean exact, int limit) {
+		Set<String> sorted = queries instanceof SortedSet ? queries : new TreeSet<String>(queries);
+		return (exact ? "exact " : "partial ") + limit + ":" + String.join(" ", sorted);
+	}
+
+	/**
+	 * Returns the cached results of a search, counting a hit or a miss.
+	 *
+	 * @param key the key of the search
+	 * @return the read-only results, or null if not cached
+	 *
+	 * @see #key(Set, boolean, int)
+	 */
+	public synchronized List<InvertedIndex.SearchItem> get(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.results;
+	}
+
+	/**
+	 * Returns the version of the index, to be read before searching and handed to
+	 * {@link #put(String, Set, boolean, List, long)}.
+	 *
+	 * @return the version of the index
+	 */
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * Caches the results of a search, unless the index changed since the version
+	 * was read or the results weigh more than the capacity. Evicts the least
+	 * recently used results until the cache is under its capacity.
+	 *
+	 * @param key     the key of the search
+	 * @param queries the set of query words
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param results the results of the search
+	 * @param version the version of the index read before searching
+	 * @return the read-only results
+	 */
+	public synchronized List<InvertedIndex.SearchItem> put(String key, Set<String> queries, boolean exact,
+			List<InvertedIndex.SearchItem> results, long version) {
+
+		results = Collections.unmodifiableList(results);
+		long added = results.size() + 1L;
+		if (version != this.version.get() || added > capacity || entries.containsKey(key)) {
+			return results;
+		}
+
+		Entry entry = new Entry(queries.toArray(new String[0]), exact, results);
+		entries.put(key, entry);
+		weight += added;
+		for (String word : entry.words) {
+			link(exact ? exactWords : partialWords, word, key);
+		}
+		for (var item : results) {
+			link(locations, item.getLocation(), key);
+		}
+
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (weight > capacity) {
+			var evicted = eldest.next();
+			eldest.remove();
+			unlink(evicted.getKey(), evicted.getValue());
+			evictions++;
+		}
+		size = entries.size();
+
+		// a writer that saw the cache empty before the size was set did not remove it
+		if (version != this.version.get()) {
+			entries.remove(key);
+			unlink(key, entry);
+			size = entries.size();
+		}
+		return results;
+	}
+
+	/**
+	 * Removes the results that may have changed after a word was added at a
+	 * location.
+	 *
+	 * @param word     the added word
+	 * @param location the location the word was added at
+	 */
+	public void invalidate(String word, String location) {
+		version.incrementAndGet();
+		if (size == 0) {
+			return;
+		}
+		synchronized (this) {
+			invalidateWord(word);
+			invalidate(locations.get(location));
+			size = entries.size();
+		}
+	}
+
+	/**
+	 * Removes the results that may have changed after words were added at
+	 * locations, such as by combining another index.
+	 *
+	 * @param words     the added words
+	 * @param locations the locations the words were added at
+	 */
+	public void invalidate(Collection<String> words, Collection<String> locations) {
+		version.incrementAndGet();
+		if (size == 0) {
+			return;
+		}
+		synchronized (this) {
+			for (String word : words) {
+				invalidateWord(word);
+			}
+			for (String location : locations) {
+				invalidate(this.locations.get(location));
+			}
+			size = entries.size();
+		}
+	}
+
+	/** Removes every cached result */
+	public synchronized void clear() {
+		version.incrementAndGet();
+		invalidations += entries.size();
+		entries.clear();
+		exactWords.clear();
+		partialWords.clear();
+		locations.clear();
+		weight = 0;
+		size = 0;
+	}
+
+	/**
+	 * Returns the amount of cached results.
+	 *
+	 * @return the amount of cached results
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of searches not found in the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of results evicted to stay under the capacity.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of results removed because the index changed.
+	 *
+	 * @return the number of invalidations
+	 */
+	public synchronized long invalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long searches = hits + misses;
+		return String.format("Cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations, %d results",
+				hits, misses, searches == 0 ? 0.0 : 100.0 * hits / searches, evictions, invalidations, entries.size());
+	}
+
+	/**
+	 * Removes the results of the queries matching an added word: the exact ones
+	 * with the word as a query word, and the partial ones with a prefix of the
+	 * word as a query word. Must be called while synchronized.
+	 *
+	 * @param word the added word
+	 */
+	private void invalidateWord(String word) {
+		invalidate(exactWords.get(word));
+		for (int i = 1; i <= word.length() && !partialWords.isEmpty(); i++) {
+			invalidate(partialWords.get(word.substring(0, i)));
+		}
+	}
+
+	/**
+	 * Removes the results of some keys. Must be called while synchronized.
+	 *
+	 * @param keys the keys to remove, or null
+	 */
+	private void invalidate(Set<String> keys) {
+		if (keys == null) {
+			return;
+		}
+		// unlinking removes from the set itself, so the keys are copied first
+		for (String key : keys.toArray(new String[0])) {
+			Entry entry = entries.remove(key);
+			if (entry != null) {
+				unlink(key, entry);
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Adds a key to the keys of a word or location.
+	 *
+	 * @param keys  the keys by word or location
+	 * @param value the word or location
+	 * @param key   the key to add
+	 */
+	private static void link(HashMap<String, Set<String>> keys, String value, String key) {
+		keys.computeIfAbsent(value, k -> new HashSet<String>()).add(key);
+	}
+
+	/**
+	 * Removes a key from the keys of a word or location.
+	 *
+	 * @param keys  the keys by word or location
+	 * @param value the word or location
+	 * @param key   the key to remove
+	 */
+	private static void unlink(HashMap<String, Set<String>> keys, String value, String key) {
+		Set<String> set = keys.get(value);
+		if (set != null && set.remove(key) && set.isEmpty()) {
+			keys.remove(value);
+		}
+	}
+
+	/**
+	 * Removes a removed result from the keys of its words and locations, and from
+	 * the total weight. Must be called while synchronized.
+	 *
+	 * @param key   the key of the result
+	 * @param entry the removed result
+	 */
+	private void unlink(String key, Entry entry) {
+		weight -= entry.results.size() + 1L;
+		for (String word : entry.words) {
+			unlink(entry.exact ? exactWords : partialWords, word, key);
+		}
+		for (var item : entry.results) {
+			unlink(locations, item.getLocation(), key);
+		}
+	}
+
+	/**
+	 * The results of a search, with what is needed to find them again when the
+	 * index changes.
+	 */
+	private static class Entry {
+
+		/** The query words */
+		private final String[] words;
+
+		/** The boolean value for partial or exact searching */
+		private final boolean exact;
+
+		/** The read-only results */
+		private final List<InvertedIndex.SearchItem> results;
+
+		/**
+		 * Constructor
+		 *
+		 * @param words   the query words
+		 * @param exact   the boolean value for partial or exact searching
+		 * @param results the read-only results
+		 */
+		public Entry(String[] words, boolean exact, List<InvertedIndex.SearchItem> results) {
+			this.words = words;
+			this.exact = exact;
+			this.results = results;
+		}
+	}
+}
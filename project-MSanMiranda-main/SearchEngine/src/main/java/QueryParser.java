@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A data structure to store parsed query lines Sorted alphabetically without
@@ -25,14 +26,46 @@ public class QueryParser implements QueryParserInterface {
 	/** Data Structure to hold SearchItems */
 	private final TreeMap<String, List<InvertedIndex.SearchItem>> searchMap;
 
+	/** The maximum amount of search items kept per query, or 0 for all */
+	private final int limit;
+
+	/** The pool to split long prefix searches on, or null to search sequentially */
+	private final ForkJoinPool pool;
+
 	/**
 	 * Basic constructor with a reference to InvertedIndex
 	 * 
 	 * @param index the InvertedIndex to reference
 	 */
 	public QueryParser(InvertedIndex index) {
+		this(index, 0);
+	}
+
+	/**
+	 * Constructor keeping only the best search items of every query
+	 * 
+	 * @param index the InvertedIndex to reference
+	 * @param limit the maximum amount of search items kept per query, or 0 for all
+	 */
+	public QueryParser(InvertedIndex index, int limit) {
+		this(index, limit, null);
+	}
+
+	/**
+	 * Constructor keeping only the best search items of every query and splitting
+	 * long prefix searches on a fork-join pool
+	 * 
+	 * @param index the InvertedIndex to reference
+	 * @param limit the maximum amount of search items kept per query, or 0 for all
+	 * @param pool  the pool to split long prefix searches on, or null
+	 *
+	 * @see InvertedIndex#search(Set, boolean, int, ForkJoinPool)
+	 */
+	public QueryParser(InvertedIndex index, int limit, ForkJoinPool pool) {
 		this.index = index;
 		this.searchMap = new TreeMap<String, List<InvertedIndex.SearchItem>>();
+		this.limit = limit;
+		this.pool = pool;
 	}
 
 	/* Contains Function */
@@ -73,7 +106,7 @@ public class QueryParser implements QueryParserInterface {
 		String str = String.join(" ", set);
 
 		if (!searchMap.containsKey(str) && !str.isEmpty()) {
-			items = index.search(set, exact);
+			items = index.search(set, exact, limit, pool);
 			searchMap.put(str, items);
 		}
 	}
@@ -85,4 +118,16 @@ public class QueryParser implements QueryParserInterface {
 			SimpleJsonWriter.asSearchItems(searchMap, writer, 0);
 		}
 	}
+
+	@Override
+	public void toJson(Path currentWritePath, StreamingJsonWriter.Format format) throws IOException {
+		if (format == StreamingJsonWriter.Format.LEGACY) {
+			toJson(currentWritePath);
+			return;
+		}
+		try (StreamingJsonWriter writer = new StreamingJsonWriter(currentWritePath,
+				format == StreamingJsonWriter.Format.PRETTY)) {
+			writer.results(searchMap);
+		}
+	}
 }
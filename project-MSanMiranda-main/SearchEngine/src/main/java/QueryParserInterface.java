@@ -92,4 +92,15 @@ public interface QueryParserInterface {
 	 */
 	public void toJson(Path currentWritePath) throws IOException;
 
+	/**
+	 * Writes the searchMap at currentWritePath in the given format
+	 *
+	 * @param currentWritePath the path to write
+	 * @param format           the format to write
+	 * @throws IOException when an IO exception occurs
+	 *
+	 * @see StreamingJsonWriter
+	 */
+	public void toJson(Path currentWritePath, StreamingJsonWriter.Format format) throws IOException;
+
 }
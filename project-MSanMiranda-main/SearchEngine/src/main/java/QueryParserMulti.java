@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -24,7 +25,7 @@ import org.apache.logging.log4j.Logger;
 public class QueryParserMulti implements QueryParserInterface {
 
 	/** Inverted index to reference to */
-	private final InvertedIndexMulti index;
+	private final InvertedIndex index;
 
 	/** Data Structure to hold SearchItems */
 	private final TreeMap<String, List<InvertedIndex.SearchItem>> searchMap;
@@ -32,19 +33,54 @@ public class QueryParserMulti implements QueryParserInterface {
 	/** WorkQueue to use */
 	private final WorkQueue queue;
 
+	/** The maximum amount of search items kept per query, or 0 for all */
+	private final int limit;
+
+	/** The pool to split long prefix searches on, or null to search sequentially */
+	private final ForkJoinPool pool;
+
 	/** A logger specifically for this class. */
 	private static final Logger log = LogManager.getLogger(QueryParserMulti.class);
 
 	/**
 	 * Basic constructor with a reference to InvertedIndex
 	 * 
-	 * @param index the InvertedIndex to reference
+	 * @param index the thread-safe InvertedIndex to reference
 	 * @param queue the workQueue to use
 	 */
-	public QueryParserMulti(InvertedIndexMulti index, WorkQueue queue) {
+	public QueryParserMulti(InvertedIndex index, WorkQueue queue) {
+		this(index, queue, 0);
+	}
+
+	/**
+	 * Constructor keeping only the best search items of every query
+	 * 
+	 * @param index the thread-safe InvertedIndex to reference
+	 * @param queue the workQueue to use
+	 * @param limit the maximum amount of search items kept per query, or 0 for all
+	 */
+	public QueryParserMulti(InvertedIndex index, WorkQueue queue, int limit) {
+		this(index, queue, limit, null);
+	}
+
+	/**
+	 * Constructor keeping only the best search items of every query and splitting
+	 * long prefix searches on a fork-join pool. With a fork-join work queue the
+	 * searches are split on the work queue's own pool instead.
+	 * 
+	 * @param index the thread-safe InvertedIndex to reference
+	 * @param queue the workQueue to use
+	 * @param limit the maximum amount of search items kept per query, or 0 for all
+	 * @param pool  the pool to split long prefix searches on, or null
+	 *
+	 * @see InvertedIndex#search(Set, boolean, int, ForkJoinPool)
+	 */
+	public QueryParserMulti(InvertedIndex index, WorkQueue queue, int limit, ForkJoinPool pool) {
 		this.index = index;
 		this.searchMap = new TreeMap<String, List<InvertedIndex.SearchItem>>();
 		this.queue = queue;
+		this.limit = limit;
+		this.pool = pool;
 	}
 
 	/* Contains Function */
@@ -104,6 +140,20 @@ public class QueryParserMulti implements QueryParserInterface {
 		}
 	}
 
+	@Override
+	public void toJson(Path currentWritePath, StreamingJsonWriter.Format format) throws IOException {
+		if (format == StreamingJsonWriter.Format.LEGACY) {
+			toJson(currentWritePath);
+			return;
+		}
+		try (StreamingJsonWriter writer = new StreamingJsonWriter(currentWritePath,
+				format == StreamingJsonWriter.Format.PRETTY)) {
+			synchronized (searchMap) {
+				writer.results(searchMap, queue);
+			}
+		}
+	}
+
 	/**
 	 * Runnable function for a MultiThreaded building of Query Search, each instance
 	 * reads a single line to search through an existing inverted index
@@ -145,7 +195,7 @@ public class QueryParserMulti implements QueryParserInterface {
 				log.debug("checks key");
 			}
 
-			items = index.search(set, exact);
+			items = index.search(set, exact, limit, pool);
 			synchronized (searchMap) {
 				searchMap.put(str, items);
 			}
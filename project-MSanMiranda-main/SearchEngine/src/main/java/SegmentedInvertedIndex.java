@@ -0,0 +1,950 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An InvertedIndex made of immutable segments and a small mutable buffer, like
+ * a log-structured merge tree. Added words go to the buffer, which is sealed
+ * into a new segment once it holds {@link #flushSize} words. Searches look up
+ * every segment and the buffer and add up the results.
+ *
+ * Sealed segments are compacted in the background: once {@link #FACTOR}
+ * segments fall in the same size tier, a tier being a power of FACTOR times the
+ * flush size, they are copied into a single new segment without any lock and
+ * swapped in under the write lock, so searches are not blocked by merges. A
+ * saved binary index can be the first segment, so new files are added to it
+ * without rebuilding it.
+ *
+ * A location removed from a sealed segment is recorded as a tombstone of that
+ * segment instead of copying it, so a changed file of a large saved index costs
+ * no more than its lookups. The segment hides its removed locations from every
+ * read, and they are dropped for good once the segment is merged.
+ *
+ * A location is expected to be added to a single segment; a location added
+ * again after its segment was sealed counts in both.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class SegmentedInvertedIndex extends InvertedIndex {
+
+	/** A logger specifically for this class. */
+	private static final Logger log = LogManager.getLogger(SegmentedInvertedIndex.class);
+
+	/** The default amount of words the buffer holds before it is sealed */
+	public static final int DEFAULT_FLUSH = 1_000_000;
+
+	/** The amount of segments in a tier that are merged, and the tier growth */
+	public static final int FACTOR = 4;
+
+	/** The lock protecting the buffer and the swapping of segments */
+	private final SimpleReadWriteLock lock;
+
+	/** The amount of words the buffer holds before it is sealed */
+	private final int flushSize;
+
+	/** The single thread merging segments in the background, started once needed */
+	private WorkQueue merger;
+
+	/** The sealed segments, oldest first, replaced as a whole when changed */
+	private volatile List<Segment> segments;
+
+	/** The index new words are added to */
+	private InvertedIndex buffer;
+
+	/** The amount of words added to the buffer */
+	private long buffered;
+
+	/** The amount of merges done */
+	private int merges;
+
+	/** Basic constructor with no parameter */
+	public SegmentedInvertedIndex() {
+		this(DEFAULT_FLUSH);
+	}
+
+	/**
+	 * Constructor with the size of the buffer
+	 *
+	 * @param flushSize the amount of words the buffer holds before it is sealed
+	 */
+	public SegmentedInvertedIndex(int flushSize) {
+		this(null, flushSize);
+	}
+
+	/**
+	 * Constructor adding to an existing index, such as a
+	 * {@link MappedInvertedIndex} opened from a saved binary index. The base index
+	 * becomes the first segment and is never changed.
+	 *
+	 * @param base      the index to add to, or null to start empty
+	 * @param flushSize the amount of words the buffer holds before it is sealed
+	 */
+	public SegmentedInvertedIndex(InvertedIndex base, int flushSize) {
+		super();
+		this.lock = new SimpleReadWriteLock();
+		this.flushSize = flushSize;
+		this.merger = null;
+		this.segments = base == null ? List.of() : List.of(new Segment(base, tokens(base)));
+		this.buffer = new InvertedIndex();
+		this.buffered = 0;
+		this.merges = 0;
+	}
+
+	/* Contains Function */
+
+	@Override
+	public boolean containsWord(String word) {
+		lock.readLock().lock();
+		try {
+			for (InvertedIndex index : view()) {
+				if (index.containsWord(word)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean containsLocationCount(String location) {
+		lock.readLock().lock();
+		try {
+			for (InvertedIndex index : view()) {
+				if (index.containsLocationCount(location)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		lock.readLock().lock();
+		try {
+			for (InvertedIndex index : view()) {
+				if (index.containsLocation(word, location)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean containsIndex(String word, String location, Integer index) {
+		lock.readLock().lock();
+		try {
+			for (InvertedIndex segment : view()) {
+				if (segment.containsIndex(word, location, index)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/* Size-like functions */
+
+	@Override
+	public int inWordLocations(String word) {
+		lock.readLock().lock();
+		try {
+			Set<String> locations = locations(word);
+			return locations == null ? 0 : locations.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int inWordIndexes(String word) {
+		lock.readLock().lock();
+		try {
+			int total = 0;
+			for (InvertedIndex index : view()) {
+				total += index.inWordIndexes(word);
+			}
+			return total;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int inWordinLocationIndexes(String word, String location) {
+		lock.readLock().lock();
+		try {
+			int total = 0;
+			for (InvertedIndex index : view()) {
+				total += index.inWordinLocationIndexes(word, location);
+			}
+			return total;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int uniqueWords() {
+		lock.readLock().lock();
+		try {
+			return words().size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/* Getter-Like Functions */
+
+	@Override
+	public Set<String> getWordSet() {
+		lock.readLock().lock();
+		try {
+			return Collections.unmodifiableSet(words());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getLocationSet(String word) {
+		lock.readLock().lock();
+		try {
+			Set<String> locations = locations(word);
+			return locations == null ? null : Collections.unmodifiableSet(locations);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<Integer> getIndexSet(String word, String location) {
+		lock.readLock().lock();
+		try {
+			TreeSet<Integer> indexes = null;
+			for (InvertedIndex index : view()) {
+				if (index.containsLocation(word, location)) {
+					if (indexes == null) {
+						indexes = new TreeSet<Integer>();
+					}
+					indexes.addAll(index.getIndexSet(word, location));
+				}
+			}
+			return indexes == null ? null : Collections.unmodifiableSet(indexes);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> keySetCount() {
+		lock.readLock().lock();
+		try {
+			TreeSet<String> locations = new TreeSet<String>();
+			for (InvertedIndex index : view()) {
+				locations.addAll(index.keySetCount());
+			}
+			return Collections.unmodifiableSet(locations);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Integer getCount(String location) {
+		lock.readLock().lock();
+		try {
+			return locationTotal(location);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Function to return the amount of sealed segments
+	 *
+	 * @return the amount of sealed segments
+	 */
+	public int segments() {
+		return segments.size();
+	}
+
+	/* Data-Adding Functions */
+
+	@Override
+	public void addIndex(String word, String location, Integer index) {
+		lock.writeLock().lock();
+		try {
+			buffer.addIndex(word, location, index);
+			buffered++;
+			flushIfFull();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(word, location);
+	}
+
+	@Override
+	public void addDocument(String location, List<String> words) {
+		lock.writeLock().lock();
+		try {
+			buffer.addDocument(location, words);
+			buffered += words.size();
+			flushIfFull();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		changed(words, location);
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		long tokens = tokens(other);
+		lock.writeLock().lock();
+		try {
+			changed(other);
+			buffer.addAll(other);
+			buffered += tokens;
+			flushIfFull();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	protected void moveAll(InvertedIndex other) {
+		long tokens = tokens(other);
+		lock.writeLock().lock();
+		try {
+			changed(other);
+			buffer.moveAll(other);
+			buffered += tokens;
+			flushIfFull();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the location from the buffer, and adds it to the tombstones of every
+	 * sealed segment holding it, since sealed segments are never changed.
+	 */
+	@Override
+	public boolean removeLocation(String location) {
+		boolean found;
+		lock.writeLock().lock();
+		try {
+			found = buffer.removeLocation(location);
+			ArrayList<Segment> kept = new ArrayList<Segment>();
+			for (Segment segment : segments) {
+				if (segment.view.containsLocationCount(location)) {
+					kept.add(segment.without(location));
+					found = true;
+				} else {
+					kept.add(segment);
+				}
+			}
+			segments = List.copyOf(kept);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (found) {
+			changed(List.of(), location);
+		}
+		return found;
+	}
+
+	/**
+	 * Seals the buffer into a new segment, even if it is not full, and waits for
+	 * the background merges to finish.
+	 */
+	public void flush() {
+		WorkQueue merger;
+		lock.writeLock().lock();
+		try {
+			seal();
+			merger = this.merger;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (merger != null) {
+			merger.finish();
+		}
+	}
+
+	/**
+	 * Seals the buffer, waits for the background merges to finish and stops the
+	 * merge thread. Searching keeps working, but the index cannot be added to
+	 * after this call completes.
+	 */
+	public void close() {
+		flush();
+		lock.writeLock().lock();
+		try {
+			if (merger != null) {
+				merger.shutdown();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Function to seal the buffer into a new segment once it is full. The caller
+	 * must hold the write lock.
+	 */
+	private void flushIfFull() {
+		if (buffered >= flushSize) {
+			seal();
+		}
+	}
+
+	/**
+	 * Function to seal the buffer into a new segment and start a background
+	 * merge. The caller must hold the write lock.
+	 */
+	private void seal() {
+		if (buffered == 0 && buffer.uniqueWords() == 0) {
+			return;
+		}
+		ArrayList<Segment> sealed = new ArrayList<Segment>(segments);
+		sealed.add(new Segment(buffer, buffered));
+		segments = List.copyOf(sealed);
+		log.debug("Sealed a segment of " + buffered + " words, " + sealed.size() + " segments");
+
+		buffer = new InvertedIndex();
+		buffered = 0;
+		if (merger == null) {
+			merger = new WorkQueue(1);
+		}
+		merger.execute(this::compact);
+	}
+
+	/**
+	 * Function to merge the segments of any full tier, run on the merge thread.
+	 * The segments are only read while merging, so searches go on, and the merged
+	 * segment replaces them under the write lock.
+	 */
+	private void compact() {
+		List<Segment> tier;
+		while ((tier = fullTier(segments)) != null) {
+			CompactInvertedIndex merged = new CompactInvertedIndex();
+			long tokens = 0;
+			for (Segment segment : tier) {
+				merged.addAll(segment.view);
+				tokens += segment.tokens;
+			}
+
+			lock.writeLock().lock();
+			try {
+				// a segment given a tombstone meanwhile makes the merge stale
+				if (!segments.containsAll(tier)) {
+					continue;
+				}
+				ArrayList<Segment> remaining = new ArrayList<Segment>();
+				boolean placed = false;
+				for (Segment segment : segments) {
+					if (!tier.contains(segment)) {
+						remaining.add(segment);
+					} else if (!placed) {
+						remaining.add(new Segment(merged, tokens));
+						placed = true;
+					}
+				}
+				segments = List.copyOf(remaining);
+				merges++;
+			} finally {
+				lock.writeLock().unlock();
+			}
+			log.debug("Merged " + tier.size() + " segments into one of " + tokens + " words");
+		}
+	}
+
+	/**
+	 * Function to find the segments of the smallest tier holding at least
+	 * {@link #FACTOR} segments
+	 *
+	 * @param segments the sealed segments
+	 * @return the segments of the tier, oldest first, or null if no tier is full
+	 */
+	private List<Segment> fullTier(List<Segment> segments) {
+		TreeMap<Integer, List<Segment>> tiers = new TreeMap<Integer, List<Segment>>();
+		for (Segment segment : segments) {
+			tiers.computeIfAbsent(tier(segment.tokens), key -> new ArrayList<Segment>()).add(segment);
+		}
+		for (List<Segment> tier : tiers.values()) {
+			if (tier.size() >= FACTOR) {
+				return tier;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Function to find the size tier of a segment, 0 up to {@link #FACTOR} times
+	 * the flush size, 1 up to FACTOR squared times and so on
+	 *
+	 * @param tokens the amount of words in the segment
+	 * @return the tier of the segment
+	 */
+	private int tier(long tokens) {
+		int tier = 0;
+		for (long limit = (long) flushSize * FACTOR; tokens >= limit && tier < 62; limit *= FACTOR) {
+			tier++;
+		}
+		return tier;
+	}
+
+	/**
+	 * Function to add up the word counts of every location of an index
+	 *
+	 * @param index the index to count
+	 * @return the amount of words in the index
+	 */
+	private static long tokens(InvertedIndex index) {
+		long tokens = 0;
+		for (String location : index.keySetCount()) {
+			tokens += index.getCount(location);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Function to return the segments and the buffer to look up. The caller must
+	 * hold the read or write lock.
+	 *
+	 * @return the sealed segments and the buffer
+	 */
+	private List<InvertedIndex> view() {
+		List<Segment> sealed = segments;
+		List<InvertedIndex> view = new ArrayList<InvertedIndex>(sealed.size() + 1);
+		for (Segment segment : sealed) {
+			view.add(segment.view);
+		}
+		view.add(buffer);
+		return view;
+	}
+
+	/**
+	 * Function to collect the words of every segment. The caller must hold the
+	 * read or write lock.
+	 *
+	 * @return the sorted words
+	 */
+	private TreeSet<String> words() {
+		TreeSet<String> words = new TreeSet<String>();
+		for (InvertedIndex index : view()) {
+			words.addAll(index.getWordSet());
+		}
+		return words;
+	}
+
+	/**
+	 * Function to collect the locations of a word in every segment. The caller
+	 * must hold the read or write lock.
+	 *
+	 * @param word the word to look up
+	 * @return the sorted locations, or null if no segment has the word
+	 */
+	private TreeSet<String> locations(String word) {
+		TreeSet<String> locations = null;
+		for (InvertedIndex index : view()) {
+			if (index.containsWord(word)) {
+				if (locations == null) {
+					locations = new TreeSet<String>();
+				}
+				locations.addAll(index.getLocationSet(word));
+			}
+		}
+		return locations;
+	}
+
+	/* JSon - String Function */
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		InvertedIndex copy;
+		lock.readLock().lock();
+		try {
+			copy = snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+		copy.toJson(path);
+	}
+
+	@Override
+	public void toCountJson(Path path) throws IOException {
+		TreeMap<String, Integer> counts = new TreeMap<String, Integer>();
+		lock.readLock().lock();
+		try {
+			for (InvertedIndex index : view()) {
+				for (String location : index.keySetCount()) {
+					counts.merge(location, index.getCount(location), Math::max);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			SimpleJsonWriter.asObject(counts, writer, 0);
+		}
+	}
+
+	@Override
+	public void toJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		InvertedIndex copy;
+		lock.readLock().lock();
+		try {
+			copy = snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+		copy.toJson(path, format);
+	}
+
+	@Override
+	public void toCountJson(Path path, StreamingJsonWriter.Format format) throws IOException {
+		InvertedIndex copy;
+		lock.readLock().lock();
+		try {
+			copy = snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+		copy.toCountJson(path, format);
+	}
+
+	@Override
+	public void toBinary(Path path) throws IOException {
+		InvertedIndex copy;
+		lock.readLock().lock();
+		try {
+			copy = snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+		copy.toBinary(path);
+	}
+
+	@Override
+	protected InvertedIndex snapshot() {
+		CompactInvertedIndex copy = new CompactInvertedIndex();
+		for (InvertedIndex index : view()) {
+			copy.addAll(index);
+		}
+		return copy;
+	}
+
+	/* Search Functions */
+
+	@Override
+	public List<SearchItem> search(Set<String> queries, boolean exact) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchItem> search(Set<String> queries, boolean exact, int limit, ForkJoinPool pool) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact, limit, pool);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/* Storage Functions used by search */
+
+	@Override
+	protected Collection<String> matchingWords(String query, boolean exact) {
+		if (exact) {
+			for (InvertedIndex index : view()) {
+				if (index.containsWord(query)) {
+					return Set.of(query);
+				}
+			}
+			return Set.of();
+		}
+
+		TreeSet<String> matches = new TreeSet<String>();
+		for (InvertedIndex index : view()) {
+			matches.addAll(index.matchingWords(query, false));
+		}
+		return matches;
+	}
+
+	@Override
+	protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+		for (InvertedIndex index : view()) {
+			if (index.containsWord(word)) {
+				index.forEachLocation(word, action);
+			}
+		}
+	}
+
+	@Override
+	protected int locationTotal(String location) {
+		int total = 0;
+		for (InvertedIndex index : view()) {
+			total = Math.max(total, index.locationTotal(location));
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		lock.readLock().lock();
+		try {
+			return String.format("SegmentedInvertedIndex[segments=%d, buffered=%d, merges=%d]", segments.size(),
+					buffered, merges);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * A sealed segment, the amount of words added to it and the locations removed
+	 * from it since. A removal makes a new segment instead of changing this one.
+	 */
+	private static class Segment {
+
+		/** The index of the segment, never changed once sealed */
+		private final InvertedIndex index;
+
+		/** The amount of words added to the segment and not removed */
+		private final long tokens;
+
+		/** The locations removed from the segment */
+		private final Set<String> removed;
+
+		/** The index of the segment without the removed locations */
+		private final InvertedIndex view;
+
+		/**
+		 * Constructor
+		 *
+		 * @param index  the index of the segment
+		 * @param tokens the amount of words added to the segment
+		 */
+		public Segment(InvertedIndex index, long tokens) {
+			this(index, tokens, Set.of());
+		}
+
+		/**
+		 * Constructor with the locations removed from the segment
+		 *
+		 * @param index   the index of the segment
+		 * @param tokens  the amount of words added to the segment and not removed
+		 * @param removed the locations removed from the segment
+		 */
+		private Segment(InvertedIndex index, long tokens, Set<String> removed) {
+			this.index = index;
+			this.tokens = tokens;
+			this.removed = removed;
+			this.view = removed.isEmpty() ? index : new Pruned(index, removed);
+		}
+
+		/**
+		 * Function to return this segment with one more location removed
+		 *
+		 * @param location the location to remove, found in this segment
+		 * @return the segment without the location
+		 */
+		public Segment without(String location) {
+			HashSet<String> removed = new HashSet<String>(this.removed);
+			removed.add(location);
+			return new Segment(index, tokens - view.getCount(location), Collections.unmodifiableSet(removed));
+		}
+	}
+
+	/**
+	 * A read-only view of the index of a segment hiding the locations removed from
+	 * it. Only the functions reading the segment are supported.
+	 */
+	private static class Pruned extends InvertedIndex {
+
+		/** The index of the segment */
+		private final InvertedIndex index;
+
+		/** The locations hidden */
+		private final Set<String> removed;
+
+		/**
+		 * Constructor
+		 *
+		 * @param index   the index of the segment
+		 * @param removed the locations hidden
+		 */
+		public Pruned(InvertedIndex index, Set<String> removed) {
+			super();
+			this.index = index;
+			this.removed = removed;
+		}
+
+		@Override
+		public boolean containsWord(String word) {
+			Set<String> locations = index.getLocationSet(word);
+			if (locations != null) {
+				for (String location : locations) {
+					if (!removed.contains(location)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean containsLocationCount(String location) {
+			return !removed.contains(location) && index.containsLocationCount(location);
+		}
+
+		@Override
+		public boolean containsLocation(String word, String location) {
+			return !removed.contains(location) && index.containsLocation(word, location);
+		}
+
+		@Override
+		public boolean containsIndex(String word, String location, Integer index) {
+			return !removed.contains(location) && this.index.containsIndex(word, location, index);
+		}
+
+		@Override
+		public int inWordLocations(String word) {
+			Set<String> locations = getLocationSet(word);
+			return locations == null ? 0 : locations.size();
+		}
+
+		@Override
+		public int inWordIndexes(String word) {
+			int total = 0;
+			Set<String> locations = getLocationSet(word);
+			if (locations != null) {
+				for (String location : locations) {
+					total += index.inWordinLocationIndexes(word, location);
+				}
+			}
+			return total;
+		}
+
+		@Override
+		public int inWordinLocationIndexes(String word, String location) {
+			return removed.contains(location) ? 0 : index.inWordinLocationIndexes(word, location);
+		}
+
+		@Override
+		public int uniqueWords() {
+			return getWordSet().size();
+		}
+
+		@Override
+		public Set<String> getWordSet() {
+			TreeSet<String> words = new TreeSet<String>();
+			for (String word : index.getWordSet()) {
+				if (containsWord(word)) {
+					words.add(word);
+				}
+			}
+			return Collections.unmodifiableSet(words);
+		}
+
+		@Override
+		public Set<String> getLocationSet(String word) {
+			Set<String> locations = index.getLocationSet(word);
+			if (locations == null) {
+				return null;
+			}
+			TreeSet<String> kept = new TreeSet<String>(locations);
+			kept.removeAll(removed);
+			return kept.isEmpty() ? null : Collections.unmodifiableSet(kept);
+		}
+
+		@Override
+		public Set<Integer> getIndexSet(String word, String location) {
+			return removed.contains(location) ? null : index.getIndexSet(word, location);
+		}
+
+		@Override
+		public Set<String> keySetCount() {
+			TreeSet<String> locations = new TreeSet<String>(index.keySetCount());
+			locations.removeAll(removed);
+			return Collections.unmodifiableSet(locations);
+		}
+
+		@Override
+		public Integer getCount(String location) {
+			return removed.contains(location) ? 0 : index.getCount(location);
+		}
+
+		@Override
+		protected Collection<String> matchingWords(String query, boolean exact) {
+			ArrayList<String> words = new ArrayList<String>();
+			for (String word : index.matchingWords(query, exact)) {
+				if (containsWord(word)) {
+					words.add(word);
+				}
+			}
+			return words;
+		}
+
+		@Override
+		protected void forEachLocation(String word, ObjIntConsumer<String> action) {
+			index.forEachLocation(word, (location, indexes) -> {
+				if (!removed.contains(location)) {
+					action.accept(location, indexes);
+				}
+			});
+		}
+
+		@Override
+		protected int locationTotal(String location) {
+			return removed.contains(location) ? 0 : index.locationTotal(location);
+		}
+
+		@Override
+		public String toString() {
+			return index + " without " + removed;
+		}
+	}
+}
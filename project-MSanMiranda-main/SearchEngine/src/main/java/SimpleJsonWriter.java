@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Function;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
@@ -25,6 +26,10 @@ import java.util.TreeSet;
  */
 public class SimpleJsonWriter {
 
+	/** The formatter for scores, one per thread since DecimalFormat is not thread-safe */
+	private static final ThreadLocal<DecimalFormat> FORMATTER = ThreadLocal
+			.withInitial(() -> new DecimalFormat("0.00000000"));
+
 	/**
 	 * Indents using a tab character by the number of times specified.
 	 *
@@ -215,12 +220,31 @@ public class SimpleJsonWriter {
 	 * @param level  the initial indent level
 	 * @throws IOException if an IO error occurs
 	 * 
-	 * @see #doubleNestedArray(String, TreeMap, Writer, int)
+	 * @see #doubleNestedArray(Collection, Function, Writer, int)
 	 */
 	public static void doubleNestedArray(TreeMap<String, TreeMap<String, TreeSet<Integer>>> map, Writer writer,
 			int level) throws IOException {
-		
-		Iterator<String> iterator = map.keySet().iterator();
+		doubleNestedArray(map.keySet(), map::get, writer, level);
+	}
+
+	/**
+	 * Writes the elements as a double-nested pretty JSON object, looking up the
+	 * nested map of each key only when it is written. Useful for indexes that do
+	 * not keep their data as nested maps.
+	 *
+	 * @param keys   the sorted keys of the outer object
+	 * @param values the function returning the nested map of a key
+	 * @param writer the writer to use
+	 * @param level  the initial indent level
+	 * @throws IOException if an IO error occurs
+	 * 
+	 * @see #doubleNestedArray(String, Map, Writer, int)
+	 */
+	public static void doubleNestedArray(Collection<String> keys,
+			Function<String, ? extends Map<String, ? extends Collection<Integer>>> values, Writer writer, int level)
+			throws IOException {
+
+		Iterator<String> iterator = keys.iterator();
 		String next;
 
 		indent(writer, level);
@@ -228,12 +252,12 @@ public class SimpleJsonWriter {
 
 		if (iterator.hasNext()) {
 			next = iterator.next();
-			doubleNestedArray(next, map.get(next), writer, level);
+			doubleNestedArray(next, values.apply(next), writer, level);
 		}
 		while (iterator.hasNext()) {
 			next = iterator.next();
 			writer.write(",");
-			doubleNestedArray(next, map.get(next), writer, level);
+			doubleNestedArray(next, values.apply(next), writer, level);
 		}
 		indent(writer, level);
 		writer.write("\n}");
@@ -248,8 +272,8 @@ public class SimpleJsonWriter {
 	 * @param level  the initial indent level
 	 * @throws IOException when it happens
 	 */
-	private static void doubleNestedArray(String key, TreeMap<String, TreeSet<Integer>> map, Writer writer, int level)
-			throws IOException {
+	private static void doubleNestedArray(String key, Map<String, ? extends Collection<Integer>> map, Writer writer,
+			int level) throws IOException {
 
 		writer.write("\n");
 		indent(key, writer, level + 1);
@@ -356,16 +380,21 @@ public class SimpleJsonWriter {
 	private static void asSearchItems(InvertedIndex.SearchItem item, Writer writer, int level)
 			throws IOException {
 		
-		DecimalFormat FORMATTER = new DecimalFormat("0.00000000");
 		indent(writer, level);
 		writer.write("{\n");
 
 		indent("where", writer, level + 1);
-		writer.write(": " + '"' + item.getLocation() + '"' + ",\n");
+		writer.write(": ");
+		indent(item.getLocation(), writer, 0);
+		writer.write(",\n");
 		indent("count", writer, level + 1);
-		writer.write(": " + item.getAmount() + ",\n");
+		writer.write(": ");
+		writer.write(Integer.toString(item.getAmount()));
+		writer.write(",\n");
 		indent("score", writer, level + 1);
-		writer.write(": " + FORMATTER.format(item.getScore()) + "\n");
+		writer.write(": ");
+		writer.write(FORMATTER.get().format(item.getScore()));
+		writer.write("\n");
 
 		indent(writer, level);
 		writer.write("}");
@@ -1,3 +1,4 @@
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -19,6 +20,17 @@ public interface SimpleLock {
 	 */
 	public void lock();
 
+	/**
+	 * Acquires the lock if it becomes available within the given waiting time. If
+	 * the current thread is interrupted while waiting, gives up and keeps the
+	 * interrupt status set.
+	 *
+	 * @param time the maximum time to wait for the lock
+	 * @param unit the time unit of the time argument
+	 * @return {@code true} if the lock was acquired
+	 */
+	public boolean tryLock(long time, TimeUnit unit);
+
 	/**
 	 * Releases the lock.
 	 */
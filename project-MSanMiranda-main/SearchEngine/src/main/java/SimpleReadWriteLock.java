@@ -1,4 +1,5 @@
 import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -93,6 +94,26 @@ public class SimpleReadWriteLock {
 		}
 	}
 
+	/**
+	 * Waits on the lock object until notified or the deadline passes.
+	 *
+	 * @param deadline the {@link System#nanoTime()} to stop waiting at
+	 * @return false if the deadline passed or the thread was interrupted
+	 */
+	private boolean waitUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			return false;
+		}
+		try {
+			TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			return true;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
 	/**
 	 * Determines whether the thread running this code and the other thread are in
 	 * fact the same thread.
@@ -133,6 +154,20 @@ public class SimpleReadWriteLock {
 			}
 		}
 
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			long deadline = System.nanoTime() + unit.toNanos(time);
+			synchronized (lock) {
+				while (writers > 0) {
+					if (!waitUntil(deadline)) {
+						return false;
+					}
+				}
+				readers++;
+				return true;
+			}
+		}
+
 		/**
 		 * Decreases the number of active readers and notifies any waiting threads if
 		 * necessary.
@@ -185,6 +220,21 @@ public class SimpleReadWriteLock {
 			}
 		}
 
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			long deadline = System.nanoTime() + unit.toNanos(time);
+			synchronized (lock) {
+				while (writers > 0 || readers > 0) {
+					if (!waitUntil(deadline)) {
+						return false;
+					}
+				}
+				writers++;
+				writer = Thread.currentThread();
+				return true;
+			}
+		}
+
 		/**
 		 * Decreases the number of active writers, resets the thread that holds the
 		 * write lock, and notifies any waiting threads if necessary.
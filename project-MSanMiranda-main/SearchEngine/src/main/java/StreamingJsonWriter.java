@@ -0,0 +1,626 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the inverted index, word counts and search results as JSON straight
+ * into a large reusable byte buffer, encoding UTF-8 itself and writing the
+ * buffer to the output stream only when it is full. Indentation is precomputed
+ * per level, and the structure is written as a stream of words and locations,
+ * so the caller never needs to build nested maps.
+ *
+ * The pretty format is the same as {@link SimpleJsonWriter}; the compact format
+ * leaves out all whitespace. Quotation marks, backslashes and control
+ * characters inside strings are escaped.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class StreamingJsonWriter implements Closeable {
+
+	/**
+	 * The ways the index and counts can be written as JSON.
+	 */
+	public enum Format {
+		/** Pretty JSON written through {@link SimpleJsonWriter} */
+		LEGACY,
+		/** Pretty JSON written through a {@link StreamingJsonWriter} */
+		PRETTY,
+		/** JSON without whitespace written through a {@link StreamingJsonWriter} */
+		COMPACT
+	}
+
+	/** The size of the buffer in bytes */
+	private static final int BUFFER = 1 << 20;
+
+	/** The deepest level written by this class */
+	private static final int LEVELS = 4;
+
+	/** The amount of queries written by a single task when writing in parallel */
+	private static final int GROUP = 256;
+
+	/** The size of the buffer of a single task when writing in parallel */
+	private static final int GROUP_BUFFER = 1 << 14;
+
+	/** The amount of decimals of a score */
+	private static final int DECIMALS = 8;
+
+	/** Ten to the power of {@link #DECIMALS} */
+	private static final long SCALE = 100_000_000L;
+
+	/** A newline followed by the tabs of each level, by level */
+	private static final byte[][] INDENTS = new byte[LEVELS][];
+
+	static {
+		for (int level = 0; level < LEVELS; level++) {
+			INDENTS[level] = ("\n" + "\t".repeat(level)).getBytes();
+		}
+	}
+
+	/** The stream to write to */
+	private final OutputStream out;
+
+	/** Whether to write pretty JSON */
+	private final boolean pretty;
+
+	/** The bytes not yet written to the stream */
+	private final byte[] buffer;
+
+	/** The amount of bytes used in the buffer */
+	private int position;
+
+	/** Whether nothing was written yet inside the current object or array */
+	private boolean first;
+
+	/** Whether a word object is open */
+	private boolean inWord;
+
+	/** The formatter for scores too close to a rounding tie, created when needed */
+	private DecimalFormat format;
+
+	/**
+	 * Opens a file to write JSON to, replacing it if it exists.
+	 *
+	 * @param path   the file to write
+	 * @param pretty whether to write pretty JSON
+	 * @throws IOException if unable to open the file
+	 */
+	public StreamingJsonWriter(Path path, boolean pretty) throws IOException {
+		this(Files.newOutputStream(path), pretty);
+	}
+
+	/**
+	 * Writes JSON to a stream, closing the stream when closed.
+	 *
+	 * @param out    the stream to write to
+	 * @param pretty whether to write pretty JSON
+	 */
+	public StreamingJsonWriter(OutputStream out, boolean pretty) {
+		this(out, pretty, BUFFER);
+	}
+
+	/**
+	 * Writes JSON to a stream through a buffer of the given size.
+	 *
+	 * @param out    the stream to write to
+	 * @param pretty whether to write pretty JSON
+	 * @param size   the size of the buffer in bytes, at least 16
+	 */
+	private StreamingJsonWriter(OutputStream out, boolean pretty, int size) {
+		this.out = out;
+		this.pretty = pretty;
+		this.buffer = new byte[size];
+		this.position = 0;
+		this.first = true;
+		this.inWord = false;
+		this.format = null;
+	}
+
+	/* Inverted index */
+
+	/**
+	 * Starts the inverted index object.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void beginIndex() throws IOException {
+		write('{');
+		first = true;
+		inWord = false;
+	}
+
+	/**
+	 * Starts the object of a word, closing the previous word's object.
+	 *
+	 * @param word the word
+	 * @throws IOException if an IO error occurs
+	 */
+	public void word(String word) throws IOException {
+		if (inWord) {
+			endObject();
+		}
+		element(1);
+		key(word);
+		write('{');
+		first = true;
+		inWord = true;
+	}
+
+	/**
+	 * Writes a location of the current word and its positions.
+	 *
+	 * @param location  the location
+	 * @param positions the positions, of which the first length are written
+	 * @param length    the amount of positions to write
+	 * @throws IOException if an IO error occurs
+	 */
+	public void location(String location, int[] positions, int length) throws IOException {
+		element(2);
+		key(location);
+		write('[');
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				write(',');
+			}
+			indent(3);
+			write(positions[i]);
+		}
+		indent(2);
+		write(']');
+	}
+
+	/**
+	 * Writes a location of the current word and its positions.
+	 *
+	 * @param location  the location
+	 * @param positions the positions
+	 * @throws IOException if an IO error occurs
+	 */
+	public void location(String location, Collection<Integer> positions) throws IOException {
+		element(2);
+		key(location);
+		write('[');
+		boolean next = false;
+		for (int index : positions) {
+			if (next) {
+				write(',');
+			}
+			indent(3);
+			write(index);
+			next = true;
+		}
+		indent(2);
+		write(']');
+	}
+
+	/**
+	 * Ends the inverted index object, closing the last word's object.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void endIndex() throws IOException {
+		if (inWord) {
+			endObject();
+			inWord = false;
+		}
+		endObject();
+	}
+
+	/* Counts */
+
+	/**
+	 * Writes the word counts of every location as an object.
+	 *
+	 * @param counts the word counts by location
+	 * @throws IOException if an IO error occurs
+	 */
+	public void counts(Map<String, Integer> counts) throws IOException {
+		write('{');
+		first = true;
+		for (var entry : counts.entrySet()) {
+			element(1);
+			key(entry.getKey());
+			write(entry.getValue());
+		}
+		endObject();
+	}
+
+	/* Search results */
+
+	/**
+	 * Writes the search results of every query as an object.
+	 *
+	 * @param results the search results by query, sorted by query
+	 * @throws IOException if an IO error occurs
+	 */
+	public void results(Map<String, ? extends List<InvertedIndex.SearchItem>> results) throws IOException {
+		write('{');
+		first = true;
+		for (var entry : results.entrySet()) {
+			query(entry.getKey(), entry.getValue());
+		}
+		endObject();
+	}
+
+	/**
+	 * Writes the search results of every query as an object, formatting groups of
+	 * queries in parallel on the work queue and writing the groups in query order.
+	 * Only a few groups per worker thread are kept in memory at once.
+	 *
+	 * @param results the search results by query, sorted by query
+	 * @param queue   the work queue to format on
+	 * @throws IOException if an IO error occurs
+	 */
+	public void results(Map<String, ? extends List<InvertedIndex.SearchItem>> results, WorkQueue queue)
+			throws IOException {
+
+		var entries = new ArrayList<Map.Entry<String, ? extends List<InvertedIndex.SearchItem>>>(results.entrySet());
+		int groups = (entries.size() + GROUP - 1) / GROUP;
+		int window = queue.size() * 4;
+
+		write('{');
+		for (int start = 0; start < groups; start += window) {
+			byte[][] formatted = new byte[Math.min(window, groups - start)][];
+			IOException[] failure = new IOException[1];
+
+			for (int i = 0; i < formatted.length; i++) {
+				int slot = i;
+				int from = (start + i) * GROUP;
+				int to = Math.min(from + GROUP, entries.size());
+				queue.execute(() -> {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream(GROUP_BUFFER);
+					try (StreamingJsonWriter writer = new StreamingJsonWriter(bytes, pretty, GROUP_BUFFER)) {
+						writer.first = from == 0;
+						for (var entry : entries.subList(from, to)) {
+							writer.query(entry.getKey(), entry.getValue());
+						}
+					} catch (IOException e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+					formatted[slot] = bytes.toByteArray();
+				});
+			}
+			queue.finish();
+
+			synchronized (failure) {
+				if (failure[0] != null) {
+					throw failure[0];
+				}
+			}
+			for (byte[] bytes : formatted) {
+				write(bytes);
+			}
+		}
+		first = entries.isEmpty();
+		endObject();
+	}
+
+	/**
+	 * Writes the search results of a single query as an array.
+	 *
+	 * @param query the query
+	 * @param items the search results of the query
+	 * @throws IOException if an IO error occurs
+	 */
+	private void query(String query, List<InvertedIndex.SearchItem> items) throws IOException {
+		element(1);
+		key(query);
+		write('[');
+		if (!items.isEmpty() && items.get(0).getLocation() != null) {
+			boolean next = false;
+			for (var item : items) {
+				if (next) {
+					write(',');
+				}
+				indent(2);
+				write('{');
+				indent(3);
+				key("where");
+				write(item.getLocation());
+				write(',');
+				indent(3);
+				key("count");
+				write(item.getAmount());
+				write(',');
+				indent(3);
+				key("score");
+				write(item.getScore());
+				indent(2);
+				write('}');
+				next = true;
+			}
+		}
+		indent(1);
+		write(']');
+	}
+
+	/* Structure */
+
+	/**
+	 * Starts an element of an object or array at a level, writing the separator
+	 * from the previous element.
+	 *
+	 * @param level the indent level of the element
+	 * @throws IOException if an IO error occurs
+	 */
+	private void element(int level) throws IOException {
+		if (!first) {
+			write(',');
+		}
+		first = false;
+		indent(level);
+	}
+
+	/**
+	 * Writes a key of an object, followed by the colon.
+	 *
+	 * @param key the key
+	 * @throws IOException if an IO error occurs
+	 */
+	private void key(String key) throws IOException {
+		write(key);
+		write(':');
+		if (pretty) {
+			write(' ');
+		}
+	}
+
+	/**
+	 * Closes an object. Objects close at the start of the line at every level, as
+	 * they do in {@link SimpleJsonWriter}.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void endObject() throws IOException {
+		indent(0);
+		write('}');
+		first = false;
+	}
+
+	/**
+	 * Writes a newline and the tabs of a level, if writing pretty JSON.
+	 *
+	 * @param level the indent level
+	 * @throws IOException if an IO error occurs
+	 */
+	private void indent(int level) throws IOException {
+		if (pretty) {
+			byte[] indent = INDENTS[level];
+			if (buffer.length - position < indent.length) {
+				flush();
+			}
+			System.arraycopy(indent, 0, buffer, position, indent.length);
+			position += indent.length;
+		}
+	}
+
+	/* Encoding */
+
+	/**
+	 * Writes an ASCII character.
+	 *
+	 * @param c the character
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(char c) throws IOException {
+		if (position == buffer.length) {
+			flush();
+		}
+		buffer[position++] = (byte) c;
+	}
+
+	/**
+	 * Writes an int in decimal without creating a string.
+	 *
+	 * @param value the int
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(int value) throws IOException {
+		if (buffer.length - position < 11) {
+			flush();
+		}
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				byte[] digits = Integer.toString(value).getBytes();
+				System.arraycopy(digits, 0, buffer, position, digits.length);
+				position += digits.length;
+				return;
+			}
+			buffer[position++] = '-';
+			value = -value;
+		}
+
+		int end = position + digits(value);
+		int i = end;
+		do {
+			buffer[--i] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		position = end;
+	}
+
+	/**
+	 * Writes a score with 8 decimals, as {@link DecimalFormat} does with the
+	 * pattern {@code 0.00000000} and its default half-even rounding. Scores are
+	 * scaled and rounded without creating any objects; only scores whose scaled
+	 * value is too close to a rounding tie, or that are negative, huge or not a
+	 * number, are handed to a DecimalFormat.
+	 *
+	 * @param score the score
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(double score) throws IOException {
+		double scaled = score * SCALE;
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+
+		// below 1e9 the scaled value is off by less than 1e-7, so only near ties matter
+		if (!(score >= 0 && scaled < 1e9) || Math.abs(fraction - 0.5) < 1e-6
+				|| Double.doubleToRawLongBits(score) != Double.doubleToRawLongBits(Math.abs(score))) {
+			if (format == null) {
+				format = new DecimalFormat("0.00000000");
+			}
+			byte[] text = format.format(score).getBytes(StandardCharsets.UTF_8);
+			write(text);
+			return;
+		}
+
+		long rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+		long whole = rounded / SCALE;
+		long decimals = rounded % SCALE;
+
+		if (buffer.length - position < 2 + 1 + DECIMALS) {
+			flush();
+		}
+		int end = position + digits((int) whole);
+		int i = end;
+		do {
+			buffer[--i] = (byte) ('0' + whole % 10);
+			whole /= 10;
+		} while (whole != 0);
+		position = end;
+
+		buffer[position++] = '.';
+		for (i = position + DECIMALS - 1; i >= position; i--) {
+			buffer[i] = (byte) ('0' + decimals % 10);
+			decimals /= 10;
+		}
+		position += DECIMALS;
+	}
+
+	/**
+	 * Writes bytes as they are.
+	 *
+	 * @param bytes the bytes
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(byte[] bytes) throws IOException {
+		if (buffer.length - position < bytes.length) {
+			flush();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Returns the amount of decimal digits of a non-negative int.
+	 *
+	 * @param value the int
+	 * @return the amount of digits
+	 */
+	private static int digits(int value) {
+		int digits = 1;
+		while (value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * Writes a string surrounded by quotation marks, encoded as UTF-8 and escaped.
+	 *
+	 * @param text the string
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(String text) throws IOException {
+		write('"');
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (buffer.length - position < 6) {
+				flush();
+			}
+			if (c >= 0x20 && c < 0x80) {
+				if (c == '"' || c == '\\') {
+					buffer[position++] = '\\';
+				}
+				buffer[position++] = (byte) c;
+			} else if (c < 0x20) {
+				escape(c);
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | c >> 6);
+				buffer[position++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int code = Character.toCodePoint(c, text.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | code >> 18);
+				buffer[position++] = (byte) (0x80 | code >> 12 & 0x3F);
+				buffer[position++] = (byte) (0x80 | code >> 6 & 0x3F);
+				buffer[position++] = (byte) (0x80 | code & 0x3F);
+			} else if (Character.isSurrogate(c)) {
+				// same replacement as the UTF-8 encoder of a BufferedWriter
+				buffer[position++] = '?';
+			} else {
+				buffer[position++] = (byte) (0xE0 | c >> 12);
+				buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+				buffer[position++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		write('"');
+	}
+
+	/**
+	 * Writes the escape sequence of a control character. The buffer must have room
+	 * for 6 bytes.
+	 *
+	 * @param c the control character
+	 */
+	private void escape(char c) {
+		buffer[position++] = '\\';
+		switch (c) {
+			case '\n':
+				buffer[position++] = 'n';
+				break;
+			case '\r':
+				buffer[position++] = 'r';
+				break;
+			case '\t':
+				buffer[position++] = 't';
+				break;
+			default:
+				buffer[position++] = 'u';
+				buffer[position++] = '0';
+				buffer[position++] = '0';
+				buffer[position++] = (byte) Character.forDigit(c >> 4, 16);
+				buffer[position++] = (byte) Character.forDigit(c & 0xF, 16);
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the stream.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void flush() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Cleans, splits and stems text written a character at a time, like
+ * {@link TextFileStemmer#listStems(String)} on the whole text, without keeping
+ * the whole text. The characters are held in a reusable buffer and stemmed a
+ * chunk at a time, each chunk ending at a space or line break, so a word is
+ * never split between chunks.
+ *
+ * Warning: This class is not thread-safe. It uses the {@link CachingStemmer} of
+ * the thread that made it, so must only be used by that thread.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ *
+ * @see HtmlStream
+ */
+public class StreamingStemmer implements IntConsumer {
+
+	/** The amount of characters held before stemming them at the next space */
+	public static final int CHUNK = 8 * 1024;
+
+	/** The characters not stemmed yet */
+	private final StringBuilder buffer;
+
+	/** The tokenizer of each chunk */
+	private final TextTokenizer tokenizer;
+
+	/** The stemmer of the words */
+	private final CachingStemmer stemmer;
+
+	/** The stemmed words */
+	private ArrayList<String> words;
+
+	/** Whether a word was found, so a later chunk cannot start with an empty word */
+	private boolean started;
+
+	/** Basic constructor with no parameter */
+	public StreamingStemmer() {
+		this.buffer = new StringBuilder(CHUNK + 64);
+		this.tokenizer = new TextTokenizer();
+		this.stemmer = CachingStemmer.get();
+		this.words = new ArrayList<String>();
+	}
+
+	@Override
+	public void accept(int c) {
+		buffer.append((char) c);
+		if ((c == ' ' || c == '\n') && buffer.length() >= CHUNK) {
+			stem();
+		}
+	}
+
+	/**
+	 * Stems the characters held and returns every word stemmed since made or last
+	 * finished, starting over.
+	 *
+	 * @return the stemmed words
+	 */
+	public List<String> finish() {
+		stem();
+		List<String> stems = words;
+		words = new ArrayList<String>();
+		started = false;
+		return stems;
+	}
+
+	/**
+	 * Function to stem the characters held
+	 */
+	private void stem() {
+		tokenizer.reset(buffer.toString());
+		buffer.setLength(0);
+		while (tokenizer.next()) {
+			CharSequence token = tokenizer.token();
+			if (token.length() > 0) {
+				started = true;
+			} else if (started) {
+				/* Only the first word of the whole text can be empty */
+				continue;
+			}
+			words.add(stemmer.stem(token).toString());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StreamingStemmer[words=" + words.size() + ", buffered=" + buffer.length() + "]";
+	}
+}
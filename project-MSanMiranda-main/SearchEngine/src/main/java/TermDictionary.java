@@ -0,0 +1,402 @@
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A term dictionary mapping words to int ids, kept as a compressed trie: every
+ * node holds the run of characters leading to it, so words sharing a prefix
+ * share the nodes of that prefix. Nodes are stored in parallel int arrays and
+ * their characters in a single shared char array, instead of one String key and
+ * one tree entry object per word.
+ *
+ * Words are enumerated in the same order as {@link String#compareTo(String)},
+ * and enumerating the words starting with a prefix only visits the nodes below
+ * that prefix.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class TermDictionary {
+
+	/** The id of a node that does not end a word, and of a missing child */
+	private static final int NONE = -1;
+
+	/** The offset in {@link #chars} of the characters of each node */
+	private int[] start;
+
+	/** The amount of characters of each node */
+	private int[] length;
+
+	/** The first child of each node, children are sorted by first character */
+	private int[] child;
+
+	/** The next sibling of each node */
+	private int[] sibling;
+
+	/** The id of the word ending at each node */
+	private int[] ids;
+
+	/** The amount of nodes used */
+	private int nodes;
+
+	/** The characters of every node */
+	private char[] chars;
+
+	/** The amount of characters used */
+	private int used;
+
+	/** The amount of words */
+	private int size;
+
+	/** Constructor for an empty dictionary */
+	public TermDictionary() {
+		this.start = new int[16];
+		this.length = new int[16];
+		this.child = new int[16];
+		this.sibling = new int[16];
+		this.ids = new int[16];
+		this.nodes = 0;
+		this.chars = new char[64];
+		this.used = 0;
+		this.size = 0;
+		node(0, 0, NONE);
+	}
+
+	/**
+	 * Returns the amount of words.
+	 *
+	 * @return the amount of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of a word.
+	 *
+	 * @param word the word to look up
+	 * @return the id of the word, or -1 if not found
+	 */
+	public int get(String word) {
+		int node = 0;
+		int i = 0;
+		while (i < word.length()) {
+			node = find(node, word.charAt(i));
+			if (node == NONE || matching(node, word, i) < length[node]) {
+				return NONE;
+			}
+			i += length[node];
+		}
+		return ids[node];
+	}
+
+	/**
+	 * Checks if a word is in the dictionary.
+	 *
+	 * @param word the word to check
+	 * @return true if the word is found
+	 */
+	public boolean contains(String word) {
+		return get(word) != NONE;
+	}
+
+	/**
+	 * Adds a word with its id, replacing the id if the word is already found.
+	 *
+	 * @param word the word to add
+	 * @param id   the non-negative id of the word
+	 */
+	public void put(String word, int id) {
+		int node = 0;
+		int i = 0;
+		while (i < word.length()) {
+			char c = word.charAt(i);
+			int previous = NONE;
+			int next = child[node];
+			while (next != NONE && chars[start[next]] < c) {
+				previous = next;
+				next = sibling[next];
+			}
+
+			if (next == NONE || chars[start[next]] != c) {
+				int added = node(append(word, i), word.length() - i, id);
+				sibling[added] = next;
+				link(node, previous, added);
+				size++;
+				return;
+			}
+
+			int k = matching(next, word, i);
+			if (k < length[next]) {
+				// splits the node where the word leaves its characters
+				int split = node(start[next], k, NONE);
+				child[split] = next;
+				sibling[split] = sibling[next];
+				link(node, previous, split);
+				start[next] += k;
+				length[next] -= k;
+				sibling[next] = NONE;
+				next = split;
+			}
+			node = next;
+			i += k;
+		}
+
+		if (ids[node] == NONE) {
+			size++;
+		}
+		ids[node] = id;
+	}
+
+	/**
+	 * Hands every word and its id to the action, in sorted order.
+	 *
+	 * @param action the action taking a word and its id
+	 */
+	public void forEach(ObjIntConsumer<String> action) {
+		forEach(0, new StringBuilder(), action);
+	}
+
+	/**
+	 * Hands every word starting with the prefix and its id to the action, in
+	 * sorted order.
+	 *
+	 * @param prefix the prefix of the words
+	 * @param action the action taking a word and its id
+	 */
+	public void forEachPrefix(String prefix, ObjIntConsumer<String> action) {
+		int node = 0;
+		int i = 0;
+		while (i < prefix.length()) {
+			node = find(node, prefix.charAt(i));
+			if (node == NONE) {
+				return;
+			}
+			int k = matching(node, prefix, i);
+			if (k < length[node] && i + k < prefix.length()) {
+				return;
+			}
+			i += length[node];
+		}
+
+		StringBuilder word = new StringBuilder(prefix.length() + 16);
+		word.append(prefix, 0, i - length[node]);
+		forEach(node, word, action);
+	}
+
+	/**
+	 * Returns a sorted, read-only view of the words.
+	 *
+	 * @return the words
+	 */
+	public AbstractSet<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Words();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && TermDictionary.this.contains((String) o);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns the approximate amount of bytes used by the arrays of the dictionary.
+	 *
+	 * @return the amount of bytes
+	 */
+	public long bytes() {
+		return 5L * 4 * start.length + 2L * chars.length;
+	}
+
+	/**
+	 * Hands every word in the subtree of a node to the action, in sorted order.
+	 *
+	 * @param node   the node
+	 * @param word   the characters leading to the node, not counting its own
+	 * @param action the action taking a word and its id
+	 */
+	private void forEach(int node, StringBuilder word, ObjIntConsumer<String> action) {
+		int before = word.length();
+		word.append(chars, start[node], length[node]);
+		if (ids[node] != NONE) {
+			action.accept(word.toString(), ids[node]);
+		}
+		for (int next = child[node]; next != NONE; next = sibling[next]) {
+			forEach(next, word, action);
+		}
+		word.setLength(before);
+	}
+
+	/**
+	 * Returns the child of a node whose characters start with a character.
+	 *
+	 * @param node the node
+	 * @param c    the first character of the child
+	 * @return the child, or -1 if not found
+	 */
+	private int find(int node, char c) {
+		for (int next = child[node]; next != NONE; next = sibling[next]) {
+			char first = chars[start[next]];
+			if (first >= c) {
+				return first == c ? next : NONE;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns how many characters of a node match the word from an offset.
+	 *
+	 * @param node   the node
+	 * @param word   the word
+	 * @param offset the offset in the word
+	 * @return the amount of matching characters
+	 */
+	private int matching(int node, String word, int offset) {
+		int limit = Math.min(length[node], word.length() - offset);
+		int k = 0;
+		while (k < limit && chars[start[node] + k] == word.charAt(offset + k)) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Puts a node in the children of a parent, after the previous sibling.
+	 *
+	 * @param parent   the parent
+	 * @param previous the previous sibling, or -1 to make it the first child
+	 * @param node     the node
+	 */
+	private void link(int parent, int previous, int node) {
+		if (previous == NONE) {
+			child[parent] = node;
+		} else {
+			sibling[previous] = node;
+		}
+	}
+
+	/**
+	 * Adds a node without children or siblings.
+	 *
+	 * @param offset the offset of its characters
+	 * @param count  the amount of its characters
+	 * @param id     the id of the word ending at the node, or -1
+	 * @return the new node
+	 */
+	private int node(int offset, int count, int id) {
+		if (nodes == start.length) {
+			int capacity = nodes * 2;
+			start = Arrays.copyOf(start, capacity);
+			length = Arrays.copyOf(length, capacity);
+			child = Arrays.copyOf(child, capacity);
+			sibling = Arrays.copyOf(sibling, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+		}
+		start[nodes] = offset;
+		length[nodes] = count;
+		child[nodes] = NONE;
+		sibling[nodes] = NONE;
+		ids[nodes] = id;
+		return nodes++;
+	}
+
+	/**
+	 * Adds the characters of a word from an offset to the shared characters.
+	 *
+	 * @param word   the word
+	 * @param offset the offset in the word
+	 * @return the offset of the added characters
+	 */
+	private int append(String word, int offset) {
+		int count = word.length() - offset;
+		if (used + count > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, used + count));
+		}
+		word.getChars(offset, word.length(), chars, used);
+		used += count;
+		return used - count;
+	}
+
+	/**
+	 * Iterates through the words in sorted order, walking the trie depth first.
+	 */
+	private class Words implements Iterator<String> {
+
+		/** The nodes left to visit, the next one on top */
+		private final ArrayDeque<Integer> stack;
+
+		/** The length of the characters leading to each node left to visit */
+		private final ArrayDeque<Integer> depths;
+
+		/** The characters leading to the last visited node, including its own */
+		private final StringBuilder word;
+
+		/** The next word, or null if not found yet */
+		private String next;
+
+		/** Constructor starting at the root */
+		public Words() {
+			this.stack = new ArrayDeque<Integer>();
+			this.depths = new ArrayDeque<Integer>();
+			this.word = new StringBuilder();
+			this.next = null;
+			stack.push(0);
+			depths.push(0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && !stack.isEmpty()) {
+				int node = stack.pop();
+				word.setLength(depths.pop());
+				word.append(chars, start[node], length[node]);
+				if (ids[node] != NONE) {
+					next = word.toString();
+				}
+
+				// pushes the children last to first, so the first is visited next
+				int children = 0;
+				for (int c = child[node]; c != NONE; c = sibling[c]) {
+					children++;
+				}
+				int[] order = new int[children];
+				children = 0;
+				for (int c = child[node]; c != NONE; c = sibling[c]) {
+					order[children++] = c;
+				}
+				for (int i = children - 1; i >= 0; i--) {
+					stack.push(order[i]);
+					depths.push(word.length());
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String word = next;
+			next = null;
+			return word;
+		}
+	}
+}
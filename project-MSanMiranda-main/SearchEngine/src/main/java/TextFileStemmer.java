@@ -23,18 +23,24 @@ public class TextFileStemmer {
 	/** The default stemmer algorithm used by this class. */
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
+	/** The reusable tokenizer of each thread stemming */
+	private static final ThreadLocal<TextTokenizer> tokenizers = ThreadLocal.withInitial(TextTokenizer::new);
+
 	/**
-	 * Stems line per file, put into container
+	 * Stems line per file, put into container, using the tokenizer of the
+	 * current thread
 	 * 
 	 * @param line      the line to stem
 	 * @param stemmer   the stemmer to use
 	 * @param container data structure to store stemmed words
 	 */
 	public static void stemLine(String line, Stemmer stemmer, Collection<String> container) {
-		for (String word : TextParser.parse(line)) {
-			word = stemmer.stem(word).toString();
-			container.add(word);
+		TextTokenizer tokenizer = tokenizers.get().reset(line);
+		while (tokenizer.next()) {
+			container.add(stemmer.stem(tokenizer.token()).toString());
 		}
+		// do not hold on to a long line once it is stemmed
+		tokenizer.reset("");
 	}
 
 	/**
@@ -44,11 +50,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a list of cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see CachingStemmer
 	 * @see #DEFAULT
 	 */
 	public static ArrayList<String> listStems(String line) {
-		SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
+		CachingStemmer stemmer = CachingStemmer.get();
 		ArrayList<String> list = new ArrayList<String>();
 		stemLine(line, stemmer, list);
 		return list;
@@ -67,7 +73,7 @@ public class TextFileStemmer {
 	 */
 	public static ArrayList<String> listStems(Path inputFile) throws IOException {
 		ArrayList<String> list = new ArrayList<String>();
-		SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
+		CachingStemmer stemmer = CachingStemmer.get();
 		String line;
 
 		try (BufferedReader reader = Files.newBufferedReader(inputFile)) {
@@ -85,11 +91,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see CachingStemmer
 	 * @see #DEFAULT
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
+		CachingStemmer stemmer = CachingStemmer.get();
 		TreeSet<String> list = new TreeSet<String>();
 		stemLine(line, stemmer, list);
 		return list;
@@ -109,7 +115,7 @@ public class TextFileStemmer {
 	 */
 	public static TreeSet<String> uniqueStems(Path inputFile) throws IOException {
 		TreeSet<String> list = new TreeSet<String>();
-		SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
+		CachingStemmer stemmer = CachingStemmer.get();
 		String line;
 
 		try (BufferedReader reader = Files.newBufferedReader(inputFile)) {
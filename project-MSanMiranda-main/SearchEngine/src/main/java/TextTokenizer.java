@@ -0,0 +1,229 @@
+import java.util.Arrays;
+
+/**
+ * A streaming replacement for {@link TextParser#parse(String)} that walks the
+ * text once, dropping non-letters and diacritics and lowercasing into a
+ * reusable buffer, instead of normalizing, cleaning, lowercasing and splitting
+ * into several intermediate strings.
+ *
+ * Characters up to {@code U+00FF} are looked up in a table built from
+ * {@link TextParser#clean(String)} itself, so the words are the same as the
+ * ones parsed by {@link TextParser}. From the first other character on, the
+ * rest of the text is parsed by {@link TextParser} instead, since those depend
+ * on their neighbors once normalized and lowercased.
+ *
+ * Usage: {@code tokenizer.reset(text); while (tokenizer.next()) {
+ * tokenizer.token(); }}
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class TextTokenizer {
+
+	/** A character removed by cleaning */
+	private static final byte REMOVED = 0;
+
+	/** A character kept as a lowercase letter */
+	private static final byte LETTER = 1;
+
+	/** A whitespace character, also removed by {@link String#strip()} */
+	private static final byte SPACE = 2;
+
+	/** A whitespace character splitting words but kept by {@link String#strip()} */
+	private static final byte SEPARATOR = 3;
+
+	/** A character only parsed by {@link TextParser} */
+	private static final byte OTHER = 4;
+
+	/** The kind of every character up to {@code U+00FF} */
+	private static final byte[] KINDS = new byte[256];
+
+	/** The cleaned lowercase letter of every letter up to {@code U+00FF} */
+	private static final char[] LETTERS = new char[256];
+
+	static {
+		for (char c = 0; c < KINDS.length; c++) {
+			String cleaned = TextParser.clean(String.valueOf(c));
+			if (cleaned.isEmpty()) {
+				KINDS[c] = REMOVED;
+			} else if (cleaned.length() > 1) {
+				KINDS[c] = OTHER;
+			} else if (TextParser.SPLIT_REGEX.matcher(cleaned).matches()) {
+				KINDS[c] = Character.isWhitespace(cleaned.charAt(0)) ? SPACE : SEPARATOR;
+			} else {
+				KINDS[c] = LETTER;
+				LETTERS[c] = cleaned.charAt(0);
+			}
+		}
+	}
+
+	/** The text to tokenize */
+	private String text;
+
+	/** The position of the next character */
+	private int position;
+
+	/** The position after the last whitespace, where the current word started */
+	private int start;
+
+	/** Whether a letter has been found yet */
+	private boolean started;
+
+	/** The cleaned characters of the current word */
+	private char[] buffer;
+
+	/** The view of the current word */
+	private final Token token;
+
+	/** The words parsed by {@link TextParser} for the rest of the text, or null */
+	private String[] words;
+
+	/** The next word parsed by {@link TextParser} */
+	private int next;
+
+	/** The current word if parsed by {@link TextParser}, or null */
+	private String word;
+
+	/** Constructor */
+	public TextTokenizer() {
+		this.buffer = new char[32];
+		this.token = new Token();
+		reset("");
+	}
+
+	/**
+	 * Starts tokenizing a text.
+	 *
+	 * @param text the text to tokenize
+	 * @return this tokenizer
+	 */
+	public TextTokenizer reset(String text) {
+		this.text = text;
+		this.position = 0;
+		this.start = 0;
+		this.started = false;
+		this.token.length = 0;
+		this.words = null;
+		this.next = 0;
+		this.word = null;
+		return this;
+	}
+
+	/**
+	 * Moves to the next word.
+	 *
+	 * @return true if there is a next word
+	 */
+	public boolean next() {
+		if (words != null) {
+			return nextWord();
+		}
+
+		int length = 0;
+		int size = text.length();
+		while (position < size) {
+			char c = text.charAt(position);
+			byte kind = c < KINDS.length ? KINDS[c] : OTHER;
+
+			if (kind == LETTER) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, length * 2);
+				}
+				buffer[length++] = LETTERS[c];
+				started = true;
+			} else if (kind == OTHER || (kind == SEPARATOR && !started)) {
+				// strip keeps a leading separator, which splits into an empty first word
+				words = TextParser.parse(text.substring(start));
+				if (started && words.length > 0 && words[0].isEmpty()) {
+					// only the first word of the whole text can be empty
+					next = 1;
+				}
+				return nextWord();
+			} else if (kind != REMOVED) {
+				start = position + 1;
+				if (length > 0) {
+					position++;
+					return found(length);
+				}
+			}
+			position++;
+		}
+
+		start = position;
+		return length > 0 && found(length);
+	}
+
+	/**
+	 * Returns the current word, only valid until {@link #next()} or
+	 * {@link #reset(String)} is called.
+	 *
+	 * @return the current word
+	 *
+	 * @see Token
+	 */
+	public CharSequence token() {
+		return word != null ? word : token;
+	}
+
+	/**
+	 * Makes the cleaned characters the current word.
+	 *
+	 * @param length the amount of cleaned characters
+	 * @return true
+	 */
+	private boolean found(int length) {
+		token.length = length;
+		word = null;
+		return true;
+	}
+
+	/**
+	 * Moves to the next word parsed by {@link TextParser}.
+	 *
+	 * @return true if there is a next word
+	 */
+	private boolean nextWord() {
+		if (next < words.length) {
+			word = words[next++];
+			return true;
+		}
+		word = null;
+		return false;
+	}
+
+	/**
+	 * A view of the cleaned characters of the current word.
+	 */
+	private class Token implements CharSequence {
+
+		/** The amount of cleaned characters */
+		private int length;
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			return buffer[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return toString().subSequence(from, to);
+		}
+
+		@Override
+		public String toString() {
+			return new String(buffer, 0, length);
+		}
+	}
+}
@@ -1,6 +1,9 @@
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,27 +22,26 @@ public class WebCrawler {
 	/** A logger specifically for this class. */
 	private static final Logger log = LogManager.getLogger(WebCrawler.class);
 
-	/** A structure to see what locations have already been visited */
-	private static HashSet<URL> locationMap = new HashSet<URL>();
-
 	/**
-	 * A function to build and populate the InvertedIndexMulti given a URL base &
-	 * limit of redirects
+	 * A function to build and populate the InvertedIndexMulti given a URL base and
+	 * limit of redirects. Crawls level by level, so the pages crawled are the
+	 * first ones found breadth-first.
 	 *
 	 * @param currentReadPath start the URLs to parse
 	 * @param crawlsLeft      the max amount of crawling allowed
-	 * @param multiLibrary    InvertedIndex to reference
+	 * @param multiLibrary    thread-safe InvertedIndex to reference
 	 * @param queue           work Queue to use
+	 *
+	 * @see #crawl(URL, int, InvertedIndex, WorkQueue)
 	 */
-	public static void build(URL currentReadPath, int crawlsLeft, InvertedIndexMulti multiLibrary, WorkQueue queue) {
-		String base = currentReadPath.toString();
-		int endSlash = base.lastIndexOf("/");
-		base = base.substring(0, endSlash + 1);
+	public static void build(URL currentReadPath, int crawlsLeft, InvertedIndex multiLibrary, WorkQueue queue) {
+		String base = base(currentReadPath);
 		log.debug("Seed is is" + base);
 
+		HashSet<URL> locationMap = new HashSet<URL>();
 		ArrayList<URL> list = new ArrayList<URL>();
 		list.add(currentReadPath);
-		while (crawlsLeft > 0) {
+		while (crawlsLeft > 0 && !list.isEmpty()) {
 			ArrayList<URL> nextList = new ArrayList<URL>();
 			for (URL link : list) {
 				if (crawlsLeft > 0 && !locationMap.contains(link) && base.length() < link.toString().length()) {
@@ -54,6 +56,305 @@ public class WebCrawler {
 		}
 	}
 
+	/**
+	 * A function to build and populate the InvertedIndexMulti given a URL base and
+	 * limit of pages without waiting for a level to finish. Each page queues the
+	 * links it finds as soon as it is parsed, so every worker stays busy until the
+	 * limit is reached. Which pages are crawled depends on which are fetched
+	 * first, unlike {@link #build(URL, int, InvertedIndex, WorkQueue)}.
+	 *
+	 * @param seed  the first URL to crawl
+	 * @param max   the max amount of pages to crawl
+	 * @param map   thread-safe InvertedIndex to reference
+	 * @param queue work Queue to use
+	 */
+	public static void crawl(URL seed, int max, InvertedIndex map, WorkQueue queue) {
+		crawl(seed, max, map, queue, null);
+	}
+
+	/**
+	 * A function to build and populate the InvertedIndexMulti given a URL base and
+	 * limit of pages like {@link #crawl(URL, int, InvertedIndex, WorkQueue)}, the
+	 * pages being fetched by the fetcher instead of on the work queue. The work
+	 * queue only parses and indexes the pages, so the amount of pages waited on at
+	 * once is the in-flight limit of the fetcher, not the amount of threads.
+	 *
+	 * @param seed    the first URL to crawl
+	 * @param max     the max amount of pages to crawl
+	 * @param map     thread-safe InvertedIndex to reference
+	 * @param queue   work Queue to use
+	 * @param fetcher the fetcher to use, or {@code null} to fetch on the work queue
+	 */
+	public static void crawl(URL seed, int max, InvertedIndex map, WorkQueue queue, AsyncFetcher fetcher) {
+		crawl(new Frontier(base(seed), max, map, queue, fetcher, 0), seed, max);
+	}
+
+	/**
+	 * A function to build and populate the InvertedIndexMulti given a URL base and
+	 * limit of pages like {@link #crawl(URL, int, InvertedIndex, WorkQueue)}, each
+	 * page being cleaned and stemmed as it is read instead of once read whole, so
+	 * a page is never held in memory. Only the anchor tags are kept to find the
+	 * links of a page, and only the first bytes of a page up to the limit are
+	 * crawled.
+	 *
+	 * @param seed  the first URL to crawl
+	 * @param max   the max amount of pages to crawl
+	 * @param map   thread-safe InvertedIndex to reference
+	 * @param queue work Queue to use
+	 * @param limit the most bytes of a page crawled
+	 *
+	 * @see HtmlFetcher#stream(URL, int, int, HtmlStream)
+	 */
+	public static void stream(URL seed, int max, InvertedIndex map, WorkQueue queue, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Invalid page size limit: " + limit);
+		}
+		crawl(new Frontier(base(seed), max, map, queue, null, limit), seed, max);
+	}
+
+	/**
+	 * Function to crawl from the seed until the frontier runs out of pages
+	 *
+	 * @param frontier the frontier to crawl
+	 * @param seed     the first URL to crawl
+	 * @param max      the max amount of pages to crawl
+	 */
+	private static void crawl(Frontier frontier, URL seed, int max) {
+		log.debug("Seed is " + frontier.base);
+		frontier.offer(seed);
+		frontier.await();
+		frontier.queue.finish();
+		log.debug("Crawled " + (max - Math.max(0, frontier.budget.get())) + " pages");
+	}
+
+	/**
+	 * Function to cut a URL after its last slash, the prefix every crawled link
+	 * must be longer than
+	 *
+	 * @param seed the first URL to crawl
+	 * @return the URL up to and including its last slash
+	 */
+	private static String base(URL seed) {
+		String base = seed.toString();
+		return base.substring(0, base.lastIndexOf("/") + 1);
+	}
+
+	/**
+	 * The links seen and the pages left to crawl, shared by every page of a
+	 * single {@link WebCrawler#crawl(URL, int, InvertedIndex, WorkQueue)}.
+	 */
+	private static class Frontier {
+
+		/** Base URL String */
+		private final String base;
+
+		/** The links seen so far, crawled or not */
+		private final Set<URL> seen;
+
+		/** The amount of pages left to crawl */
+		private final AtomicInteger budget;
+
+		/** InvertedIndex Reference */
+		private final InvertedIndex map;
+
+		/** Work Queue the pages are crawled on */
+		private final WorkQueue queue;
+
+		/** The fetcher of the pages, or {@code null} to fetch on the work queue */
+		private final AsyncFetcher fetcher;
+
+		/** The amount of pages queued and not crawled yet */
+		private final AtomicInteger pending;
+
+		/** The most bytes of a page streamed, or 0 to fetch pages whole */
+		private final int limit;
+
+		/**
+		 * Constructor
+		 *
+		 * @param base    the base string url
+		 * @param budget  the max amount of pages to crawl
+		 * @param map     InvertedIndex Reference
+		 * @param queue   work Queue the pages are crawled on
+		 * @param fetcher the fetcher of the pages, or {@code null} to fetch on the
+		 *                work queue
+		 * @param limit   the most bytes of a page streamed, or 0 to fetch pages
+		 *                whole
+		 */
+		public Frontier(String base, int budget, InvertedIndex map, WorkQueue queue, AsyncFetcher fetcher,
+				int limit) {
+			this.base = base;
+			this.seen = ConcurrentHashMap.newKeySet();
+			this.budget = new AtomicInteger(budget);
+			this.map = map;
+			this.queue = queue;
+			this.fetcher = fetcher;
+			this.pending = new AtomicInteger();
+			this.limit = limit;
+		}
+
+		/**
+		 * Queues a link to crawl if it was not seen before and pages are left to
+		 * crawl.
+		 *
+		 * @param link the link found
+		 */
+		public void offer(URL link) {
+			if (base.length() >= link.toString().length() || budget.get() <= 0 || !seen.add(link)) {
+				return;
+			}
+			if (budget.getAndDecrement() > 0) {
+				log.debug("Link is " + link);
+				pending.incrementAndGet();
+				if (fetcher == null) {
+					execute(new CrawlPage(link, null, this));
+				} else {
+					fetcher.fetch(link, (html) -> {
+						if (html == null) {
+							done();
+						} else {
+							execute(new CrawlPage(link, html, this));
+						}
+					});
+				}
+			}
+		}
+
+		/**
+		 * Queues a page to crawl, marking it as crawled if it cannot be queued, such
+		 * as after the work queue is shut down, so {@link #await()} does not wait for
+		 * it.
+		 *
+		 * @param page the page to crawl
+		 */
+		private void execute(CrawlPage page) {
+			try {
+				queue.execute(page);
+			} catch (RuntimeException e) {
+				done();
+				throw e;
+			}
+		}
+
+		/**
+		 * Offers the links of a page and adds its words to the index.
+		 *
+		 * @param location the page
+		 * @param html     the html of the page
+		 */
+		public void crawl(URL location, String html) {
+			log.trace("Get Valid Links @ " + location.toString());
+			for (URL link : LinkParser.getValidLinks(base, html)) {
+				offer(link);
+			}
+
+			log.trace("Populates index");
+			IndexFactory.filePopulate(HtmlCleaner.stripHtml(html), location.toString(), map);
+		}
+
+		/**
+		 * Fetches a page, offering its links and adding its words to the index as
+		 * it is read.
+		 *
+		 * @param location the page
+		 */
+		public void stream(URL location) {
+			StreamingStemmer words = new StreamingStemmer();
+			/* The links are only needed while pages are left to crawl */
+			StringBuilder anchors = budget.get() > 0 ? new StringBuilder() : null;
+			HtmlStream html = new HtmlStream(words, anchors);
+
+			log.trace("Stream @ " + location.toString());
+			if (HtmlFetcher.stream(location, 0, limit, html)) {
+				html.finish();
+				if (anchors != null) {
+					for (URL link : LinkParser.getValidLinks(base, anchors.toString())) {
+						offer(link);
+					}
+				}
+
+				log.trace("Populates index");
+				map.addDocument(location.toString(), words.finish());
+			}
+		}
+
+		/**
+		 * Marks a queued page as crawled, waking up {@link #await()} after the last.
+		 */
+		public void done() {
+			if (pending.decrementAndGet() == 0) {
+				synchronized (this) {
+					this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Waits for every queued page to be crawled, including the pages queued
+		 * while waiting.
+		 */
+		public synchronized void await() {
+			try {
+				while (pending.get() > 0) {
+					this.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * A runnable MultiThreaded method crawling a single page of a
+	 * {@link Frontier}, offering the links it finds to the frontier right away.
+	 */
+	private static class CrawlPage implements Runnable {
+
+		/** The page to crawl */
+		private final URL location;
+
+		/** The html of the page, or {@code null} to fetch it */
+		private final String html;
+
+		/** The frontier the page belongs to */
+		private final Frontier frontier;
+
+		/**
+		 * Constructor
+		 *
+		 * @param location the page to crawl
+		 * @param html     the html of the page, or {@code null} to fetch it
+		 * @param frontier the frontier the page belongs to
+		 */
+		public CrawlPage(URL location, String html, Frontier frontier) {
+			this.location = location;
+			this.html = html;
+			this.frontier = frontier;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (html == null && frontier.limit > 0) {
+					frontier.stream(location);
+					return;
+				}
+				String page = html;
+				if (page == null) {
+					log.trace("Fetch");
+					page = HtmlFetcher.fetch(location, 0);
+				}
+				if (page != null) {
+					frontier.crawl(location, page);
+				}
+			} catch (Exception e) {
+				log.trace("WebCrawler Exception!");
+			} finally {
+				frontier.done();
+			}
+		}
+	}
+
 	/**
 	 * A runnable MultiThreaded method to add to workQueue, will read HTML, add any
 	 * links that it finds to list given.
@@ -64,7 +365,7 @@ public class WebCrawler {
 	private static class buildURL implements Runnable {
 
 		/** InvertedIndex Reference */
-		private InvertedIndexMulti map;
+		private InvertedIndex map;
 
 		/** Path when building */
 		private URL location;
@@ -83,7 +384,7 @@ public class WebCrawler {
 		 * @param nextList the list to append to for future crawling
 		 * @param base     the base string url
 		 */
-		public buildURL(URL location, InvertedIndexMulti map, ArrayList<URL> nextList, String base) {
+		public buildURL(URL location, InvertedIndex map, ArrayList<URL> nextList, String base) {
 			this.location = location;
 			this.map = map;
 			this.nextList = nextList;
@@ -119,7 +420,7 @@ public class WebCrawler {
 				IndexFactory.filePopulate(html, location.toString(), local);
 
 				log.trace("Appends index");
-				map.addAll(local);
+				map.moveAll(local);
 
 			} catch (Exception e) {
 				log.trace("WebCrawler Exception!");
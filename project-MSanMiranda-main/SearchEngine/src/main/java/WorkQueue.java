@@ -1,10 +1,32 @@
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A simple work queue implementation based on the IBM Developer article by
  * Brian Goetz. It is up to the user of this class to keep track of whether
  * there is any pending work remaining.
  *
+ * The work can either run on the queue's own pool of worker threads, or on a
+ * work-stealing {@link ForkJoinPool}; both keep the same execute, finish and
+ * join behavior.
+ *
+ * A work queue may be bounded, in which case {@link #execute(Runnable)} blocks
+ * and {@link #tryExecute(Runnable)} gives up while the queue is full. Work
+ * added by the queue's own worker threads is never held back, since blocking
+ * a worker on its own queue could leave no thread to empty it. The queue keeps
+ * counters of its depth, the time work waits before it starts, how long work
+ * runs and how busy each worker is.
+ *
  * @see <a href=
  *      "https://www.ibm.com/developerworks/library/j-jtp0730/index.html"> Java
  *      Theory and Practice: Thread Pools and Work Queues</a>
@@ -20,6 +42,12 @@ public class WorkQueue {
 	/** Queue of pending work requests. */
 	private final LinkedList<Runnable> queue;
 
+	/** The work-stealing pool used instead of the worker threads, if any. */
+	private final ForkJoinPool pool;
+
+	/** The number of threads running work. */
+	private final int threads;
+
 	/** Used to signal the queue should be shutdown. */
 	private volatile boolean shutdown;
 
@@ -27,7 +55,50 @@ public class WorkQueue {
 	public static final int DEFAULT = 5;
 
 	/** A variable to see if work is pending */
-	private int pending;
+	private final AtomicInteger pending;
+
+	/** The free slots of a bounded queue, or null if unbounded. */
+	private final Semaphore bound;
+
+	/** The number of work requests waiting to start. */
+	private final AtomicInteger depth;
+
+	/** The number of work requests turned away by a full queue. */
+	private final LongAdder rejected;
+
+	/** The number of work requests that started running. */
+	private final LongAdder started;
+
+	/** The total nanoseconds work requests waited before starting. */
+	private final LongAdder latency;
+
+	/** The longest nanoseconds a work request waited before starting. */
+	private final AtomicLong maxLatency;
+
+	/**
+	 * The number of work requests by run time, where bucket i counts run times
+	 * below 2^i microseconds that did not fit a lower bucket.
+	 */
+	private final AtomicLongArray runTimes;
+
+	/** The nanoseconds each worker thread spent running work, by thread name. */
+	private final ConcurrentHashMap<String, LongAdder> busy;
+
+	/** The {@link System#nanoTime()} the queue was started at. */
+	private final long created;
+
+	/** The number of buckets used for the run time histogram. */
+	private static final int BUCKETS = 32;
+
+	/**
+	 * The backends a work queue can run its work on.
+	 */
+	public enum Backend {
+		/** The queue's own worker threads sharing a single linked list */
+		QUEUE,
+		/** A {@link ForkJoinPool}, where each thread has its own deque of work */
+		FORK_JOIN
+	}
 
 	/**
 	 * Starts a work queue with the default number of threads.
@@ -44,15 +115,57 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
+		this(threads, Backend.QUEUE);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads on the specified
+	 * backend.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param backend where to run the work
+	 */
+	public WorkQueue(int threads, Backend backend) {
+		this(threads, backend, 0);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads on the specified
+	 * backend, holding at most capacity work requests that have not started yet.
+	 *
+	 * @param threads  number of worker threads; should be greater than 1
+	 * @param backend  where to run the work
+	 * @param capacity the most work requests waiting to start, or 0 if unbounded
+	 */
+	public WorkQueue(int threads, Backend backend, int capacity) {
 		this.queue = new LinkedList<Runnable>();
-		this.workers = new PoolWorker[threads];
+		this.threads = threads;
 
 		this.shutdown = false;
 
-		pending = 0;
+		pending = new AtomicInteger();
+
+		this.bound = capacity > 0 ? new Semaphore(capacity) : null;
+		this.depth = new AtomicInteger();
+		this.rejected = new LongAdder();
+		this.started = new LongAdder();
+		this.latency = new LongAdder();
+		this.maxLatency = new AtomicLong();
+		this.runTimes = new AtomicLongArray(BUCKETS);
+		this.busy = new ConcurrentHashMap<String, LongAdder>();
+		this.created = System.nanoTime();
+
+		if (backend == Backend.FORK_JOIN) {
+			// async mode runs submitted work in first-in first-out order
+			this.pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+			this.workers = new PoolWorker[0];
+		} else {
+			this.pool = null;
+			this.workers = new PoolWorker[threads];
+		}
 
 		// start the threads so they are waiting in the background
-		for (int i = 0; i < threads; i++) {
+		for (int i = 0; i < workers.length; i++) {
 			workers[i] = new PoolWorker();
 			workers[i].start();
 		}
@@ -60,18 +173,69 @@ public class WorkQueue {
 
 	/**
 	 * Adds a work request to the queue. A thread will process this request when
-	 * available.
+	 * available. If the queue is bounded and full, waits for a free slot first.
 	 *
 	 * @param r work request (in the form of a {@link Runnable} object)
 	 */
 	public void execute(Runnable r) {
+		boolean slot = false;
+		if (bound != null && !isWorker()) {
+			bound.acquireUninterruptibly();
+			slot = true;
+		}
+		submit(new Work(r, slot));
+	}
+
+	/**
+	 * Adds a work request to the queue unless the queue is bounded and full.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @return true if the work request was added, false if it was rejected
+	 */
+	public boolean tryExecute(Runnable r) {
+		boolean slot = false;
+		if (bound != null && !isWorker()) {
+			if (!bound.tryAcquire()) {
+				rejected.increment();
+				return false;
+			}
+			slot = true;
+		}
+		submit(new Work(r, slot));
+		return true;
+	}
+
+	/**
+	 * Hands a work request to the backend.
+	 *
+	 * @param work the work request
+	 */
+	private void submit(Work work) {
 		incrementPending();
+		depth.incrementAndGet();
+		if (pool != null) {
+			pool.execute(work);
+			return;
+		}
 		synchronized (queue) {
-			queue.addLast(r);
+			queue.addLast(work);
 			queue.notifyAll();
 		}
 	}
 
+	/**
+	 * Determines whether the current thread is one of this queue's workers.
+	 *
+	 * @return true if the current thread runs work for this queue
+	 */
+	private boolean isWorker() {
+		Thread current = Thread.currentThread();
+		if (pool != null) {
+			return ForkJoinTask.getPool() == pool;
+		}
+		return current instanceof PoolWorker && ((PoolWorker) current).owner() == this;
+	}
+
 	/**
 	 * Similar to {@link Thread#join()}, waits for all the work to be finished and
 	 * the worker threads to terminate. The work queue cannot be reused after this
@@ -89,7 +253,7 @@ public class WorkQueue {
 	public synchronized void finish() {
 
 		try {
-			while (pending > 0) {
+			while (pending.get() > 0) {
 				this.wait();
 			}
 		} catch (InterruptedException ex) {
@@ -105,6 +269,9 @@ public class WorkQueue {
 		// safe to do unsynchronized due to volatile keyword
 		shutdown = true;
 
+		if (pool != null) {
+			pool.shutdown();
+		}
 		synchronized (queue) {
 			queue.notifyAll();
 		}
@@ -116,26 +283,200 @@ public class WorkQueue {
 	 * @return number of worker threads
 	 */
 	public int size() {
-		return workers.length;
+		return threads;
+	}
+
+	/* Instrumentation */
+
+	/**
+	 * Returns the number of work requests waiting to start.
+	 *
+	 * @return the current depth of the queue
+	 */
+	public int depth() {
+		return depth.get();
+	}
+
+	/**
+	 * Returns the number of work requests that started running.
+	 *
+	 * @return the number of started work requests
+	 */
+	public long started() {
+		return started.sum();
+	}
+
+	/**
+	 * Returns the number of work requests rejected by
+	 * {@link #tryExecute(Runnable)} because the queue was full.
+	 *
+	 * @return the number of rejected work requests
+	 */
+	public long rejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the average time work requests waited between being added and
+	 * starting to run.
+	 *
+	 * @param unit the time unit to return
+	 * @return the average enqueue-to-start latency
+	 */
+	public double averageLatency(TimeUnit unit) {
+		long count = started.sum();
+		return count == 0 ? 0 : (double) latency.sum() / count / unit.toNanos(1);
+	}
+
+	/**
+	 * Returns the longest time a work request waited between being added and
+	 * starting to run.
+	 *
+	 * @param unit the time unit to return
+	 * @return the maximum enqueue-to-start latency
+	 */
+	public long maxLatency(TimeUnit unit) {
+		return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns a histogram of how long work requests ran. Bucket 0 counts run
+	 * times below 1 microsecond and bucket i counts run times from 2^(i-1) up to
+	 * 2^i microseconds; the last bucket also counts anything longer.
+	 *
+	 * @return a copy of the run time histogram
+	 */
+	public long[] runTimeHistogram() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = runTimes.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the fraction of time each worker thread spent running work since
+	 * the queue started.
+	 *
+	 * @return a sorted map of worker thread names to their utilization
+	 */
+	public Map<String, Double> utilization() {
+		double elapsed = System.nanoTime() - created;
+		TreeMap<String, Double> result = new TreeMap<String, Double>();
+		for (var entry : busy.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum() / elapsed);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("WorkQueue: %d threads, %d started, %d rejected, depth %d, ", threads,
+				started(), rejected(), depth()));
+		builder.append(String.format("latency avg %.3f ms max %d ms%n", averageLatency(TimeUnit.MILLISECONDS),
+				maxLatency(TimeUnit.MILLISECONDS)));
+
+		builder.append("Run time (us):");
+		long[] histogram = runTimeHistogram();
+		for (int i = 0; i < BUCKETS; i++) {
+			if (histogram[i] > 0) {
+				builder.append(String.format(" <%d: %d", 1L << i, histogram[i]));
+			}
+		}
+
+		builder.append(String.format("%nUtilization:"));
+		for (var entry : utilization().entrySet()) {
+			builder.append(String.format(" %s %.0f%%", entry.getKey(), entry.getValue() * 100));
+		}
+		return builder.toString();
 	}
 
 	/**
 	 * Safely increments the shared pending variable.
 	 */
-	private synchronized void incrementPending() {
-		pending++;
+	private void incrementPending() {
+		pending.incrementAndGet();
 	}
 
 	/**
 	 * Safely decrements the shared pending variable, and wakes up any threads
-	 * waiting for work to be completed.
+	 * waiting for work to be completed. Only the last piece of work takes the
+	 * monitor used by {@link #finish()}.
+	 */
+	private void decrementPending() {
+		int left = pending.decrementAndGet();
+		assert left >= 0;
+
+		if (left == 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Runs a work request, catching runtime exceptions to avoid leaking threads,
+	 * records how long it waited and ran, and marks it as no longer pending.
+	 *
+	 * @param work work request to run
+	 */
+	private void runWork(Work work) {
+		long start = System.nanoTime();
+		depth.decrementAndGet();
+		if (work.slot) {
+			bound.release();
+		}
+
+		long waited = start - work.queued;
+		started.increment();
+		latency.add(waited);
+		maxLatency.accumulateAndGet(waited, Math::max);
+
+		try {
+			work.r.run();
+		} catch (RuntimeException ex) {
+			// catch runtime exceptions to avoid leaking threads
+			System.err.println("Warning: Work queue encountered an exception while running.");
+		}
+
+		long ran = System.nanoTime() - start;
+		long micros = TimeUnit.NANOSECONDS.toMicros(ran);
+		runTimes.incrementAndGet(Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros)));
+		busy.computeIfAbsent(Thread.currentThread().getName(), name -> new LongAdder()).add(ran);
+		decrementPending();
+	}
+
+	/**
+	 * A work request along with when it was added and whether it holds a slot of
+	 * a bounded queue.
 	 */
-	private synchronized void decrementPending() {
-		assert pending > 0;
-		pending--;
+	private class Work implements Runnable {
+
+		/** The work request */
+		private final Runnable r;
+
+		/** The {@link System#nanoTime()} the work request was added at */
+		private final long queued;
 
-		if (pending == 0) {
-			this.notifyAll();
+		/** Whether the work request holds a slot of a bounded queue */
+		private final boolean slot;
+
+		/**
+		 * Constructor
+		 *
+		 * @param r    the work request
+		 * @param slot whether the work request holds a slot of a bounded queue
+		 */
+		public Work(Runnable r, boolean slot) {
+			this.r = r;
+			this.queued = System.nanoTime();
+			this.slot = slot;
+		}
+
+		@Override
+		public void run() {
+			runWork(this);
 		}
 	}
 
@@ -147,6 +488,15 @@ public class WorkQueue {
 	 */
 	private class PoolWorker extends Thread {
 
+		/**
+		 * Returns the work queue this worker takes work from.
+		 *
+		 * @return the work queue of this worker
+		 */
+		private WorkQueue owner() {
+			return WorkQueue.this;
+		}
+
 		@Override
 		public void run() {
 			Runnable r = null;
@@ -172,13 +522,7 @@ public class WorkQueue {
 					}
 				}
 
-				try {
-					r.run();
-				} catch (RuntimeException ex) {
-					// catch runtime exceptions to avoid leaking threads
-					System.err.println("Warning: Work queue encountered an exception while running.");
-				}
-				decrementPending();
+				r.run();
 			}
 		}
 	}
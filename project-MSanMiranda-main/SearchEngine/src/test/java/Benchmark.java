@@ -0,0 +1,866 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the indexing, searching and serialization hot paths on a
+ * {@link SyntheticCorpus}, single-threaded and on a {@link WorkQueue}. Every
+ * benchmark runs a few warmup iterations and then the measured ones, and the
+ * throughput of each is written as a CSV row, so the files of two versions can
+ * be compared line by line.
+ *
+ * Arguments, all optional: {@code -vocabulary}, {@code -documents},
+ * {@code -words} (per document), {@code -zipf}, {@code -seed}, {@code -queries},
+ * {@code -warmup}, {@code -iterations}, {@code -threads}, {@code -latency} (the
+ * milliseconds the {@link StandInServer} waits before every page, 0 to measure
+ * the connections alone), {@code -pages} and {@code -pagewords} (the amount and
+ * size of the large pages crawled whole or streamed),
+ * {@code -only} (a benchmark name prefix) and {@code -out} (the CSV file).
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class Benchmark {
+
+	/** The amount of empty tasks submitted to a work queue per iteration */
+	private static final int SUBMITTED = 1_000_000;
+
+	/** The amount of searches per query line by the cache benchmarks */
+	private static final int REPEATS = 20;
+
+	/** The header of the CSV file */
+	private static final String HEADER = "benchmark,mode,threads,unit,iterations,mean_per_s,stddev_per_s,min_per_s,max_per_s";
+
+	/** The amount of iterations run before measuring */
+	private final int warmup;
+
+	/** The amount of measured iterations */
+	private final int iterations;
+
+	/** The amount of threads of the work queues */
+	private final int threads;
+
+	/** The prefix of the benchmarks to run */
+	private final String only;
+
+	/** The CSV rows of the benchmarks run */
+	private final List<String> rows;
+
+	/**
+	 * Constructor
+	 *
+	 * @param warmup     the amount of iterations run before measuring
+	 * @param iterations the amount of measured iterations
+	 * @param threads    the amount of threads of the work queues
+	 * @param only       the prefix of the benchmarks to run
+	 */
+	public Benchmark(int warmup, int iterations, int threads, String only) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+		this.threads = threads;
+		this.only = only;
+		this.rows = new ArrayList<String>();
+	}
+
+	/**
+	 * Generates the corpus, runs every benchmark and writes the CSV file.
+	 *
+	 * @param args flag/value pairs configuring the corpus and the runs
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		ArgumentMap argMap = new ArgumentMap(args);
+		int vocabulary = argMap.getInteger("-vocabulary", 50_000);
+		int documents = argMap.getInteger("-documents", 200);
+		int words = argMap.getInteger("-words", 5_000);
+		double zipf = Double.parseDouble(argMap.getString("-zipf", "1.0"));
+		long seed = argMap.getInteger("-seed", 212);
+		int queries = argMap.getInteger("-queries", 2_000);
+		int latency = argMap.getInteger("-latency", 20);
+		int largePages = argMap.getInteger("-pages", 4);
+		int pageWords = argMap.getInteger("-pagewords", 50_000);
+		Path out = argMap.getPath("-out", Path.of("benchmark.csv"));
+
+		Benchmark benchmark = new Benchmark(argMap.getInteger("-warmup", 3), argMap.getInteger("-iterations", 5),
+				argMap.getInteger("-threads", WorkQueue.DEFAULT), argMap.getString("-only", ""));
+
+		String config = String.format(Locale.ROOT,
+				"# vocabulary=%d documents=%d words=%d zipf=%s seed=%d queries=%d warmup=%d iterations=%d threads=%d latency=%d pages=%d pagewords=%d",
+				vocabulary, documents, words, zipf, seed, queries, benchmark.warmup, benchmark.iterations,
+				benchmark.threads, latency, largePages, pageWords);
+		System.out.println(config);
+
+		SyntheticCorpus corpus = new SyntheticCorpus(vocabulary, documents, words, zipf, seed);
+		SyntheticCorpus large = new SyntheticCorpus(vocabulary, largePages, pageWords, zipf, seed);
+		Path directory = Files.createTempDirectory("corpus");
+		try {
+			corpus.write(directory);
+			benchmark.runAll(corpus, directory, queries, latency);
+			benchmark.runPages(large);
+			benchmark.runSizes(vocabulary, zipf, seed);
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(file);
+				}
+			}
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			writer.write(config);
+			writer.write('\n');
+			writer.write(HEADER);
+			writer.write('\n');
+			for (String row : benchmark.rows) {
+				writer.write(row);
+				writer.write('\n');
+			}
+		}
+		System.out.println("Wrote " + benchmark.rows.size() + " results to " + out);
+	}
+
+	/**
+	 * Runs every benchmark on the corpus.
+	 *
+	 * @param corpus    the corpus
+	 * @param directory the directory the corpus is written in
+	 * @param amount    the amount of query lines
+	 * @param latency   the milliseconds the stand-in server waits before every page
+	 * @throws Exception if a benchmark fails
+	 */
+	private void runAll(SyntheticCorpus corpus, Path directory, int amount, int latency) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		List<String[]> stems = new ArrayList<String[]>();
+		List<String> pages = new ArrayList<String>();
+		for (int d = 0; d < corpus.size(); d++) {
+			lines.addAll(corpus.lines(d));
+			stems.add(TextFileStemmer.listStems(corpus.text(d)).toArray(new String[0]));
+			pages.add(corpus.html(d));
+		}
+		long tokens = 0;
+		for (String[] document : stems) {
+			tokens += document.length;
+		}
+		final long total = tokens;
+
+		List<String> exactLines = corpus.queries(amount, false);
+		List<String> partialLines = corpus.queries(amount, true);
+		List<TreeSet<String>> exactQueries = new ArrayList<TreeSet<String>>();
+		List<TreeSet<String>> partialQueries = new ArrayList<TreeSet<String>>();
+		for (int i = 0; i < amount; i++) {
+			exactQueries.add(TextFileStemmer.uniqueStems(exactLines.get(i)));
+			partialQueries.add(TextFileStemmer.uniqueStems(partialLines.get(i)));
+		}
+
+		/* Text processing */
+		run("parse", "TextParser", 1, "tokens", () -> () -> {
+			long count = 0;
+			for (String line : lines) {
+				count += TextParser.parse(line).length;
+			}
+			return count;
+		});
+		run("parse", "TextTokenizer", 1, "tokens", () -> () -> {
+			TextTokenizer tokenizer = new TextTokenizer();
+			long count = 0;
+			for (String line : lines) {
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					count++;
+				}
+			}
+			return count;
+		});
+		run("stem", "TextFileStemmer", 1, "tokens", () -> () -> {
+			long count = 0;
+			for (String line : lines) {
+				count += TextFileStemmer.listStems(line).size();
+			}
+			return count;
+		});
+		run("html", "stripHtml", 1, "pages", () -> () -> {
+			for (String page : pages) {
+				HtmlCleaner.stripHtml(page);
+			}
+			return pages.size();
+		});
+		run("html", "getValidLinks", 1, "pages", () -> () -> {
+			for (int d = 0; d < pages.size(); d++) {
+				LinkParser.getValidLinks("https://www.example.com/page" + d + ".html", pages.get(d));
+			}
+			return pages.size();
+		});
+
+		/* Work queues */
+		for (WorkQueue.Backend backend : WorkQueue.Backend.values()) {
+			String mode = backend == WorkQueue.Backend.QUEUE ? "queue" : "forkjoin";
+			runQueued("submit", mode, threads, backend, "tasks", (queue) -> () -> {
+				LongAdder done = new LongAdder();
+				for (int i = 0; i < SUBMITTED; i++) {
+					queue.execute(done::increment);
+				}
+				queue.finish();
+				return done.sum();
+			});
+		}
+
+		/* Indexing */
+		run("addIndex", "tree", 1, "tokens", () -> () -> addIndexes(new InvertedIndex(), corpus, stems));
+		run("addIndex", "compact", 1, "tokens", () -> () -> addIndexes(new CompactInvertedIndex(), corpus, stems));
+		runQueued("addIndex", "multi", "tokens", (queue) -> () -> {
+			InvertedIndex index = new InvertedIndexMulti();
+			for (int d = 0; d < stems.size(); d++) {
+				int document = d;
+				queue.execute(() -> addIndexes(index, corpus.name(document), stems.get(document)));
+			}
+			queue.finish();
+			return total;
+		});
+		runQueued("addIndex", "concurrent", "tokens", (queue) -> () -> {
+			InvertedIndex index = new ConcurrentInvertedIndex();
+			for (int d = 0; d < stems.size(); d++) {
+				int document = d;
+				queue.execute(() -> addIndexes(index, corpus.name(document), stems.get(document)));
+			}
+			queue.finish();
+			return total;
+		});
+
+		run("addDocument", "tree", 1, "tokens", () -> () -> addDocuments(new InvertedIndex(), corpus, stems));
+		run("addDocument", "compact", 1, "tokens", () -> () -> addDocuments(new CompactInvertedIndex(), corpus, stems));
+		run("addDocument", "segmented", 1, "tokens", () -> () -> {
+			SegmentedInvertedIndex index = new SegmentedInvertedIndex((int) Math.max(1, total / 64));
+			long count = addDocuments(index, corpus, stems);
+			index.close();
+			return count;
+		});
+		runQueued("addDocument", "multi", "tokens", (queue) -> () -> {
+			InvertedIndex index = new InvertedIndexMulti();
+			for (int d = 0; d < stems.size(); d++) {
+				int document = d;
+				queue.execute(() -> index.addDocument(corpus.name(document), Arrays.asList(stems.get(document))));
+			}
+			queue.finish();
+			return total;
+		});
+		runQueued("addDocument", "concurrent", "tokens", (queue) -> () -> {
+			InvertedIndex index = new ConcurrentInvertedIndex();
+			for (int d = 0; d < stems.size(); d++) {
+				int document = d;
+				queue.execute(() -> index.addDocument(corpus.name(document), Arrays.asList(stems.get(document))));
+			}
+			queue.finish();
+			return total;
+		});
+
+		for (int count = 1; count < threads * 2; count *= 2) {
+			int size = Math.min(count, threads);
+			for (String mode : new String[] { "multi", "concurrent" }) {
+				runQueued("write-scaling", mode, size, "tokens", (queue) -> () -> {
+					InvertedIndex index = shared(mode);
+					for (int d = 0; d < stems.size(); d++) {
+						int document = d;
+						queue.execute(() -> index.addDocument(corpus.name(document), Arrays.asList(stems.get(document))));
+					}
+					queue.finish();
+					return total;
+				});
+				/* A search after every document, each seeing the documents added so far */
+				runQueued("mixed-scaling", mode, size, "operations", (queue) -> () -> {
+					InvertedIndex index = shared(mode);
+					for (int d = 0; d < stems.size(); d++) {
+						int document = d;
+						TreeSet<String> query = partialQueries.get(d % partialQueries.size());
+						queue.execute(() -> index.addDocument(corpus.name(document), Arrays.asList(stems.get(document))));
+						queue.execute(() -> index.search(query, false));
+					}
+					queue.finish();
+					return stems.size() * 2;
+				});
+			}
+		}
+
+		run("addAll", "tree", 1, "documents", () -> {
+			List<InvertedIndex> locals = locals(corpus, stems);
+			return () -> {
+				InvertedIndex index = new InvertedIndex();
+				for (InvertedIndex local : locals) {
+					index.addAll(local);
+				}
+				return locals.size();
+			};
+		});
+		runQueued("addAll", "multi", "documents", (queue) -> {
+			List<InvertedIndex> locals = locals(corpus, stems);
+			return () -> {
+				InvertedIndex index = new InvertedIndexMulti();
+				for (InvertedIndex local : locals) {
+					queue.execute(() -> index.addAll(local));
+				}
+				queue.finish();
+				return locals.size();
+			};
+		});
+
+		run("addAll", "tree-large", 1, "documents", () -> {
+			InvertedIndex index = large(new InvertedIndex(), corpus, stems);
+			List<InvertedIndex> locals = locals(corpus, stems);
+			return () -> {
+				for (InvertedIndex local : locals) {
+					index.addAll(local);
+				}
+				return locals.size();
+			};
+		});
+		runQueued("addAll", "multi-large", "documents", (queue) -> {
+			InvertedIndex index = large(new InvertedIndexMulti(), corpus, stems);
+			List<InvertedIndex> locals = locals(corpus, stems);
+			return () -> {
+				for (InvertedIndex local : locals) {
+					queue.execute(() -> index.addAll(local));
+				}
+				queue.finish();
+				return locals.size();
+			};
+		});
+
+		run("build", "IndexFactory", 1, "tokens", () -> () -> {
+			IndexFactory.build(directory, new InvertedIndex());
+			return total;
+		});
+		runQueued("build", "IndexFactoryMulti", "tokens", (queue) -> () -> {
+			IndexFactoryMulti.build(directory, new InvertedIndexMulti(), queue);
+			return total;
+		});
+		runQueued("build", "IndexFactoryMulti-reduce", "tokens", (queue) -> () -> {
+			IndexFactoryMulti.buildReduced(directory, new InvertedIndexMulti(), queue);
+			return total;
+		});
+		for (int count = 1; count < threads * 2; count *= 2) {
+			int size = Math.min(count, threads);
+			runQueued("build-scaling", "IndexFactoryMulti", size, "tokens", (queue) -> () -> {
+				IndexFactoryMulti.build(directory, new InvertedIndexMulti(), queue);
+				return total;
+			});
+			runQueued("build-scaling", "IndexFactoryMulti-reduce", size, "tokens", (queue) -> () -> {
+				IndexFactoryMulti.buildReduced(directory, new InvertedIndexMulti(), queue);
+				return total;
+			});
+		}
+
+		/* Searching */
+		InvertedIndex tree = new InvertedIndex();
+		addIndexes(tree, corpus, stems);
+		InvertedIndex compact = new CompactInvertedIndex();
+		addIndexes(compact, corpus, stems);
+		InvertedIndex multi = new InvertedIndexMulti();
+		addIndexes(multi, corpus, stems);
+		SegmentedInvertedIndex segmented = new SegmentedInvertedIndex((int) Math.max(1, total / 64));
+		addDocuments(segmented, corpus, stems);
+		segmented.close();
+
+		for (boolean exact : new boolean[] { true, false }) {
+			String name = exact ? "search-exact" : "search-partial";
+			List<TreeSet<String>> sets = exact ? exactQueries : partialQueries;
+			List<String> queryLines = exact ? exactLines : partialLines;
+
+			run(name, "tree", 1, "queries", () -> () -> search(tree, sets, exact));
+			run(name, "compact", 1, "queries", () -> () -> search(compact, sets, exact));
+			run(name, "segmented", 1, "queries", () -> () -> search(segmented, sets, exact));
+			run(name, "QueryParser", 1, "queries", () -> () -> {
+				QueryParser parser = new QueryParser(tree);
+				for (String line : queryLines) {
+					parser.build(line, exact);
+				}
+				return queryLines.size();
+			});
+			runQueued(name, "QueryParserMulti", "queries", (queue) -> () -> {
+				QueryParserMulti parser = new QueryParserMulti(multi, queue);
+				for (String line : queryLines) {
+					parser.build(line, exact);
+				}
+				queue.finish();
+				return queryLines.size();
+			});
+		}
+
+		/* Repeated searches, skewed towards a few query lines, with and without a result cache */
+		InvertedIndex cached = new InvertedIndex();
+		addIndexes(cached, corpus, stems);
+		for (boolean exact : new boolean[] { true, false }) {
+			String name = exact ? "cache-exact" : "cache-partial";
+			List<TreeSet<String>> sets = exact ? exactQueries : partialQueries;
+			Random random = new Random(amount);
+			List<TreeSet<String>> stream = new ArrayList<TreeSet<String>>();
+			for (int i = 0; i < amount * REPEATS; i++) {
+				stream.add(sets.get((int) (sets.size() * Math.pow(random.nextDouble(), 3))));
+			}
+
+			run(name, "uncached", 1, "queries", () -> () -> search(tree, stream, exact, 10));
+			QueryCache[] last = new QueryCache[1];
+			run(name, "cached", 1, "queries", () -> {
+				last[0] = new QueryCache();
+				cached.setCache(last[0]);
+				return () -> search(cached, stream, exact, 10);
+			});
+			if (last[0] != null) {
+				/* Kept as a comment line of the CSV file, since it is not a throughput */
+				String rate = String.format(Locale.ROOT, "# %s cached hit rate %.1f%%", name,
+						100.0 * last[0].hits() / Math.max(1, last[0].hits() + last[0].misses()));
+				rows.add(rate);
+				System.out.println(rate);
+			}
+		}
+		cached.setCache(null);
+
+		/* Serialization */
+		Path json = directory.resolve("index.json");
+		run("json-index", "SimpleJsonWriter", 1, "words", () -> () -> {
+			tree.toJson(json);
+			return tree.uniqueWords();
+		});
+		run("json-index", "StreamingJsonWriter", 1, "words", () -> () -> {
+			tree.toJson(json, StreamingJsonWriter.Format.PRETTY);
+			return tree.uniqueWords();
+		});
+		Files.deleteIfExists(json);
+
+		/* Opening a saved index against building it again, as -load does */
+		Path binary = directory.resolve("index.bin");
+		tree.toBinary(binary);
+		run("load", "rebuild", 1, "tokens", () -> () -> {
+			IndexFactory.build(directory, new InvertedIndex());
+			return total;
+		});
+		run("load", "binary", 1, "tokens", () -> () -> {
+			new MappedInvertedIndex(binary);
+			return total;
+		});
+		/* The mapped pages are only read once searched, so also time the exact queries */
+		run("load", "rebuild-search", 1, "tokens", () -> () -> {
+			InvertedIndex index = new InvertedIndex();
+			IndexFactory.build(directory, index);
+			search(index, exactQueries, true);
+			return total;
+		});
+		run("load", "binary-search", 1, "tokens", () -> () -> {
+			search(new MappedInvertedIndex(binary), exactQueries, true);
+			return total;
+		});
+		Files.deleteIfExists(binary);
+
+		TreeMap<String, List<InvertedIndex.SearchItem>> results = new TreeMap<String, List<InvertedIndex.SearchItem>>();
+		for (TreeSet<String> query : partialQueries) {
+			results.put(String.join(" ", query), tree.search(query, false));
+		}
+		run("json-results", "SimpleJsonWriter", 1, "queries", () -> () -> {
+			SimpleJsonWriter.asSearchItems(results, Writer.nullWriter(), 0);
+			return results.size();
+		});
+		run("json-results", "StreamingJsonWriter", 1, "queries", () -> () -> {
+			try (StreamingJsonWriter writer = new StreamingJsonWriter(OutputStream.nullOutputStream(), true)) {
+				writer.results(results);
+			}
+			return results.size();
+		});
+		runQueued("json-results", "StreamingJsonWriter", "queries", (queue) -> () -> {
+			try (StreamingJsonWriter writer = new StreamingJsonWriter(OutputStream.nullOutputStream(), true)) {
+				writer.results(results, queue);
+			}
+			return results.size();
+		});
+
+		/* Crawling */
+		if ("fetch".startsWith(only) || "crawl".startsWith(only)) {
+			try (StandInServer server = new StandInServer(corpus, latency)) {
+				for (long idle : new long[] { 0, HttpConnectionPool.DEFAULT_IDLE }) {
+					runQueued("fetch", idle == 0 ? "close" : "keep-alive", "pages", (queue) -> {
+						HttpConnectionPool connections = new HttpConnectionPool(threads, idle);
+						return () -> {
+							for (int d = 0; d < corpus.size(); d++) {
+								URL url = server.url(d);
+								queue.execute(() -> HtmlFetcher.fetch(url, 0, connections));
+							}
+							queue.finish();
+							connections.close();
+							return corpus.size();
+						};
+					});
+				}
+				runQueued("crawl", "levels", "pages", (queue) -> () -> {
+					InvertedIndex index = new InvertedIndexMulti();
+					WebCrawler.build(server.url(0), corpus.size(), index, queue);
+					return index.keySetCount().size();
+				});
+				runQueued("crawl", "frontier", "pages", (queue) -> () -> {
+					InvertedIndex index = new InvertedIndexMulti();
+					WebCrawler.crawl(server.url(0), corpus.size(), index, queue);
+					return index.keySetCount().size();
+				});
+				runQueued("crawl", "async", "pages", (queue) -> () -> {
+					InvertedIndex index = new InvertedIndexMulti();
+					try (AsyncFetcher fetcher = new AsyncFetcher(AsyncFetcher.DEFAULT_IN_FLIGHT)) {
+						WebCrawler.crawl(server.url(0), corpus.size(), index, queue, fetcher);
+					}
+					return index.keySetCount().size();
+				});
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmarks of crawling large pages, each fetched whole or streamed.
+	 *
+	 * @param corpus the corpus of large pages
+	 * @throws Exception if a benchmark fails
+	 */
+	private void runPages(SyntheticCorpus corpus) throws Exception {
+		if (!"page".startsWith(only)) {
+			return;
+		}
+		try (StandInServer server = new StandInServer(corpus, 0)) {
+			long bytes = 0;
+			for (int d = 0; d < corpus.size(); d++) {
+				bytes += corpus.html(d).getBytes(StandardCharsets.UTF_8).length;
+			}
+			final long total = bytes;
+
+			runQueued("page", "fetch", "bytes", (queue) -> () -> {
+				InvertedIndex index = new InvertedIndexMulti();
+				for (int d = 0; d < corpus.size(); d++) {
+					URL url = server.url(d);
+					queue.execute(() -> {
+						String html = HtmlFetcher.fetch(url, 0);
+						LinkParser.getValidLinks(url.toString(), html);
+						IndexFactory.filePopulate(HtmlCleaner.stripHtml(html), url.toString(), index);
+					});
+				}
+				queue.finish();
+				return total;
+			});
+			runQueued("page", "stream", "bytes", (queue) -> () -> {
+				InvertedIndex index = new InvertedIndexMulti();
+				for (int d = 0; d < corpus.size(); d++) {
+					URL url = server.url(d);
+					queue.execute(() -> {
+						StreamingStemmer words = new StreamingStemmer();
+						StringBuilder anchors = new StringBuilder();
+						HtmlStream html = new HtmlStream(words, anchors);
+						HtmlFetcher.stream(url, 0, HtmlFetcher.MAX_PAGE, html);
+						html.finish();
+						LinkParser.getValidLinks(url.toString(), anchors.toString());
+						index.addDocument(url.toString(), words.finish());
+					});
+				}
+				queue.finish();
+				return total;
+			});
+		}
+	}
+
+	/**
+	 * Runs the benchmarks of cleaning single pages of 10 KB to 10 MB, so the time
+	 * per byte of each size can be compared.
+	 *
+	 * @param vocabulary the amount of distinct words of the pages
+	 * @param zipf       the exponent of the word frequencies
+	 * @param seed       the seed of the pages
+	 * @throws Exception if a benchmark fails
+	 */
+	private void runSizes(int vocabulary, double zipf, long seed) throws Exception {
+		if (!"html-size".startsWith(only)) {
+			return;
+		}
+		for (int kilobytes = 10; kilobytes <= 10_000; kilobytes *= 10) {
+			/* About 12 bytes of HTML per word */
+			String page = new SyntheticCorpus(vocabulary, 1, kilobytes * 1024 / 12, zipf, seed).html(0);
+			String mode = kilobytes < 1000 ? kilobytes + "KB" : kilobytes / 1000 + "MB";
+			run("html-size", mode, 1, "bytes", () -> () -> {
+				HtmlCleaner.stripHtml(page);
+				return page.length();
+			});
+		}
+	}
+
+	/**
+	 * Runs a benchmark on its own work queue, shut down once done.
+	 *
+	 * @param name   the name of the benchmark
+	 * @param mode   the variant benchmarked
+	 * @param unit   what the counts of the operation are of
+	 * @param trial  the setup of each iteration on the work queue
+	 * @throws Exception if the benchmark fails
+	 */
+	private void runQueued(String name, String mode, String unit, QueuedTrial trial) throws Exception {
+		runQueued(name, mode, threads, unit, trial);
+	}
+
+	/**
+	 * Runs a benchmark on its own work queue of the given size, shut down once
+	 * done.
+	 *
+	 * @param name    the name of the benchmark
+	 * @param mode    the variant benchmarked
+	 * @param threads the amount of threads of the work queue
+	 * @param unit    what the counts of the operation are of
+	 * @param trial   the setup of each iteration on the work queue
+	 * @throws Exception if the benchmark fails
+	 */
+	private void runQueued(String name, String mode, int threads, String unit, QueuedTrial trial) throws Exception {
+		runQueued(name, mode, threads, WorkQueue.Backend.QUEUE, unit, trial);
+	}
+
+	/**
+	 * Runs a benchmark on its own work queue of the given size and backend, shut
+	 * down once done.
+	 *
+	 * @param name    the name of the benchmark
+	 * @param mode    the variant benchmarked
+	 * @param threads the amount of threads of the work queue
+	 * @param backend where the work queue runs its work
+	 * @param unit    what the counts of the operation are of
+	 * @param trial   the setup of each iteration on the work queue
+	 * @throws Exception if the benchmark fails
+	 */
+	private void runQueued(String name, String mode, int threads, WorkQueue.Backend backend, String unit,
+			QueuedTrial trial) throws Exception {
+		if (!name.startsWith(only)) {
+			return;
+		}
+		WorkQueue queue = new WorkQueue(threads, backend);
+		try {
+			run(name, mode, threads, unit, () -> trial.prepare(queue));
+		} finally {
+			queue.join();
+		}
+	}
+
+	/**
+	 * Runs the warmup and measured iterations of a benchmark, printing and
+	 * recording the throughput.
+	 *
+	 * @param name    the name of the benchmark
+	 * @param mode    the variant benchmarked
+	 * @param threads the amount of threads used
+	 * @param unit    what the counts of the operation are of
+	 * @param trial   the setup of each iteration
+	 * @throws Exception if the benchmark fails
+	 */
+	private void run(String name, String mode, int threads, String unit, Trial trial) throws Exception {
+		if (!name.startsWith(only)) {
+			return;
+		}
+		double[] rates = new double[iterations];
+		for (int i = -warmup; i < iterations; i++) {
+			Operation operation = trial.prepare();
+			long start = System.nanoTime();
+			long count = operation.run();
+			long elapsed = System.nanoTime() - start;
+			if (i >= 0) {
+				rates[i] = count * 1e9 / Math.max(1, elapsed);
+			}
+		}
+
+		double mean = 0;
+		double min = Double.MAX_VALUE;
+		double max = 0;
+		for (double rate : rates) {
+			mean += rate / rates.length;
+			min = Math.min(min, rate);
+			max = Math.max(max, rate);
+		}
+		double variance = 0;
+		for (double rate : rates) {
+			variance += (rate - mean) * (rate - mean) / Math.max(1, rates.length - 1);
+		}
+
+		String row = String.format(Locale.ROOT, "%s,%s,%d,%s,%d,%.1f,%.1f,%.1f,%.1f", name, mode, threads, unit,
+				iterations, mean, Math.sqrt(variance), min, max);
+		rows.add(row);
+		System.out.println(String.format(Locale.ROOT, "%-16s %-20s %2d threads %14.1f %s/s (+- %.1f)", name, mode,
+				threads, mean, unit, Math.sqrt(variance)));
+	}
+
+	/**
+	 * Returns an empty thread-safe index to add to from many threads.
+	 *
+	 * @param mode "multi" for the read/write locked index, "concurrent" for the
+	 *             lock-free one
+	 * @return the index
+	 */
+	private static InvertedIndex shared(String mode) {
+		return mode.equals("multi") ? new InvertedIndexMulti() : new ConcurrentInvertedIndex();
+	}
+
+	/**
+	 * Adds the stems of every document to an index.
+	 *
+	 * @param index  the index to add to
+	 * @param corpus the corpus naming the documents
+	 * @param stems  the stems of every document
+	 * @return the amount of stems added
+	 */
+	private static long addIndexes(InvertedIndex index, SyntheticCorpus corpus, List<String[]> stems) {
+		long count = 0;
+		for (int d = 0; d < stems.size(); d++) {
+			count += addIndexes(index, corpus.name(d), stems.get(d));
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the stems of a document to an index.
+	 *
+	 * @param index    the index to add to
+	 * @param location the name of the document
+	 * @param stems    the stems of the document
+	 * @return the amount of stems added
+	 */
+	private static long addIndexes(InvertedIndex index, String location, String[] stems) {
+		for (int i = 0; i < stems.length; i++) {
+			index.addIndex(stems[i], location, i + 1);
+		}
+		return stems.length;
+	}
+
+	/**
+	 * Adds the stems of every document to an index, a document at a time.
+	 *
+	 * @param index  the index to add to
+	 * @param corpus the corpus naming the documents
+	 * @param stems  the stems of every document
+	 * @return the amount of stems added
+	 */
+	private static long addDocuments(InvertedIndex index, SyntheticCorpus corpus, List<String[]> stems) {
+		long count = 0;
+		for (int d = 0; d < stems.size(); d++) {
+			index.addDocument(corpus.name(d), Arrays.asList(stems.get(d)));
+			count += stems.get(d).length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns an index of each document, for combining. Made again for every
+	 * iteration, since combining may share their data with the combined index.
+	 *
+	 * @param corpus the corpus naming the documents
+	 * @param stems  the stems of every document
+	 * @return an index of each document
+	 */
+	private static List<InvertedIndex> locals(SyntheticCorpus corpus, List<String[]> stems) {
+		List<InvertedIndex> locals = new ArrayList<InvertedIndex>();
+		for (int d = 0; d < stems.size(); d++) {
+			InvertedIndex local = new InvertedIndex();
+			addIndexes(local, corpus.name(d), stems.get(d));
+			locals.add(local);
+		}
+		return locals;
+	}
+
+	/**
+	 * Fills an index with every document under other names, so the documents can
+	 * be merged into an index that is already large.
+	 *
+	 * @param index  the index to fill
+	 * @param corpus the corpus naming the documents
+	 * @param stems  the stems of every document
+	 * @return the filled index
+	 */
+	private static InvertedIndex large(InvertedIndex index, SyntheticCorpus corpus, List<String[]> stems) {
+		for (int d = 0; d < stems.size(); d++) {
+			index.addDocument("base/" + corpus.name(d), Arrays.asList(stems.get(d)));
+		}
+		return index;
+	}
+
+	/**
+	 * Searches an index for every query.
+	 *
+	 * @param index   the index to search
+	 * @param queries the query word sets
+	 * @param exact   the boolean value for partial or exact searching
+	 * @return the amount of queries
+	 */
+	private static long search(InvertedIndex index, List<TreeSet<String>> queries, boolean exact) {
+		for (TreeSet<String> query : queries) {
+			index.search(query, exact);
+		}
+		return queries.size();
+	}
+
+	/**
+	 * Searches an index for every query, keeping the best results of each.
+	 *
+	 * @param index   the index to search
+	 * @param queries the query word sets
+	 * @param exact   the boolean value for partial or exact searching
+	 * @param limit   the most results kept
+	 * @return the amount of queries
+	 */
+	private static long search(InvertedIndex index, List<TreeSet<String>> queries, boolean exact, int limit) {
+		for (TreeSet<String> query : queries) {
+			index.search(query, exact, limit);
+		}
+		return queries.size();
+	}
+
+	/**
+	 * The timed part of a benchmark iteration.
+	 */
+	private interface Operation {
+
+		/**
+		 * Runs the operation.
+		 *
+		 * @return the amount of units processed
+		 * @throws Exception if the operation fails
+		 */
+		long run() throws Exception;
+	}
+
+	/**
+	 * The untimed setup of a benchmark iteration.
+	 */
+	private interface Trial {
+
+		/**
+		 * Sets up an iteration.
+		 *
+		 * @return the operation to time
+		 * @throws Exception if the setup fails
+		 */
+		Operation prepare() throws Exception;
+	}
+
+	/**
+	 * The untimed setup of a benchmark iteration using a work queue.
+	 */
+	private interface QueuedTrial {
+
+		/**
+		 * Sets up an iteration.
+		 *
+		 * @param queue the work queue to use
+		 * @return the operation to time
+		 * @throws Exception if the setup fails
+		 */
+		Operation prepare(WorkQueue queue) throws Exception;
+	}
+}
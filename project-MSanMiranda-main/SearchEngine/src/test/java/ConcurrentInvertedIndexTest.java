@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Builds the same corpus into a {@link ConcurrentInvertedIndex} from many
+ * threads and into an {@link InvertedIndex} from one, and compares their JSON.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class ConcurrentInvertedIndexTest {
+
+	/** The corpus built */
+	private static final SyntheticCorpus CORPUS = IndexTestSupport.SMALL;
+
+	/** The amount of worker threads */
+	private static final int THREADS = 4;
+
+	/**
+	 * Tests every way of adding from many threads at once gives the same index as
+	 * adding from one thread.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testConcurrentAdds() throws IOException {
+		List<List<String>> stems = IndexTestSupport.stems(CORPUS);
+		ConcurrentInvertedIndex index = new ConcurrentInvertedIndex();
+		WorkQueue queue = new WorkQueue(THREADS);
+		try {
+			for (int d = 0; d < stems.size(); d++) {
+				String location = CORPUS.name(d);
+				List<String> words = stems.get(d);
+				queue.execute(() -> add(index, location, words));
+			}
+			queue.finish();
+		} finally {
+			queue.join();
+		}
+		IndexTestSupport.assertSameIndex(expected(stems), index);
+	}
+
+	/**
+	 * Tests removing a location while other threads add the same words elsewhere
+	 * loses none of their adds.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testRemoveDuringAdds() throws IOException {
+		List<List<String>> stems = IndexTestSupport.stems(CORPUS);
+		for (int round = 0; round < 20; round++) {
+			ConcurrentInvertedIndex index = new ConcurrentInvertedIndex();
+			AtomicBoolean adding = new AtomicBoolean(true);
+
+			/* Keeps adding and removing a location sharing every word of the corpus */
+			Thread remover = new Thread(() -> {
+				int d = 0;
+				while (adding.get()) {
+					index.addDocument("scratch", stems.get(d++ % stems.size()));
+					index.removeLocation("scratch");
+				}
+			});
+			remover.start();
+
+			WorkQueue queue = new WorkQueue(THREADS);
+			try {
+				for (int d = 0; d < stems.size(); d++) {
+					String location = CORPUS.name(d);
+					List<String> words = stems.get(d);
+					queue.execute(() -> add(index, location, words));
+				}
+				queue.finish();
+			} finally {
+				queue.join();
+				adding.set(false);
+				try {
+					remover.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			IndexTestSupport.assertSameIndex(expected(stems), index);
+		}
+	}
+
+	/**
+	 * Adds a document by addDocument, addIndex or addAll, depending on its
+	 * location, so every way of adding runs at once.
+	 *
+	 * @param index    the index to add to
+	 * @param location the location of the document
+	 * @param words    the stems of the document
+	 */
+	private static void add(InvertedIndex index, String location, List<String> words) {
+		switch (Math.floorMod(location.hashCode(), 3)) {
+			case 0:
+				index.addDocument(location, words);
+				break;
+			case 1:
+				for (int i = 0; i < words.size(); i++) {
+					index.addIndex(words.get(i), location, i + 1);
+				}
+				break;
+			default:
+				InvertedIndex local = new InvertedIndex();
+				local.addDocument(location, words);
+				index.addAll(local);
+				break;
+		}
+	}
+
+	/**
+	 * Builds the corpus into an {@link InvertedIndex} from a single thread.
+	 *
+	 * @param stems the stems of every document
+	 * @return the index
+	 */
+	private static InvertedIndex expected(List<List<String>> stems) {
+		InvertedIndex index = new InvertedIndex();
+		for (int d = 0; d < stems.size(); d++) {
+			index.addDocument(CORPUS.name(d), stems.get(d));
+		}
+		return index;
+	}
+}
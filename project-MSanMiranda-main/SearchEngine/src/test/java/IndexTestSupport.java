@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The corpus and checks shared by the tests comparing an index with an
+ * {@link InvertedIndex} built the simple way.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class IndexTestSupport {
+
+	/** A small corpus, quick to build many times */
+	public static final SyntheticCorpus SMALL = new SyntheticCorpus(2_000, 120, 400, 1.0, 212);
+
+	/** Not meant to be made */
+	private IndexTestSupport() {
+	}
+
+	/**
+	 * Returns the stems of every document of a corpus.
+	 *
+	 * @param corpus the corpus
+	 * @return the stems of every document
+	 */
+	public static List<List<String>> stems(SyntheticCorpus corpus) {
+		List<List<String>> stems = new ArrayList<List<String>>();
+		for (int d = 0; d < corpus.size(); d++) {
+			stems.add(TextFileStemmer.listStems(corpus.text(d)));
+		}
+		return stems;
+	}
+
+	/**
+	 * Asserts two indexes write the same index and counts JSON.
+	 *
+	 * @param expected the expected index
+	 * @param actual   the index tested
+	 * @throws IOException if unable to write the JSON
+	 */
+	public static void assertSameIndex(InvertedIndex expected, InvertedIndex actual) throws IOException {
+		Path first = Files.createTempFile("expected", ".json");
+		Path second = Files.createTempFile("actual", ".json");
+		try {
+			expected.toJson(first);
+			actual.toJson(second);
+			assertEquals(Files.readString(first), Files.readString(second), "index JSON");
+
+			expected.toCountJson(first);
+			actual.toCountJson(second);
+			assertEquals(Files.readString(first), Files.readString(second), "counts JSON");
+		} finally {
+			Files.delete(first);
+			Files.delete(second);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Combines halves of the same corpus by addAll and moveAll, between every kind
+ * of index, and compares the JSON with the corpus built into a single
+ * {@link InvertedIndex}.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class InvertedIndexMergeTest {
+
+	/** The corpus built, with more words than {@link InvertedIndexMulti#MERGE_CHUNK} */
+	private static final SyntheticCorpus CORPUS = new SyntheticCorpus(50_000, 120, 800, 0.8, 212);
+
+	/** The stems of every document of the corpus */
+	private static final List<List<String>> STEMS = IndexTestSupport.stems(CORPUS);
+
+	/**
+	 * Tests a {@link CompactInvertedIndex} combined into an {@link InvertedIndex}
+	 * holding the other half gives the whole corpus, and is left as it was.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testAddCompact() throws IOException {
+		InvertedIndex compact = build(new CompactInvertedIndex(), 1);
+		InvertedIndex index = build(new InvertedIndex(), 0);
+		index.addAll(compact);
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), index);
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), 1), compact);
+	}
+
+	/**
+	 * Tests a {@link CompactInvertedIndex} combined into an empty
+	 * {@link InvertedIndexMulti} and moved into a {@link SegmentedInvertedIndex}
+	 * is copied instead of moved.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testMoveCompact() throws IOException {
+		InvertedIndex compact = build(new CompactInvertedIndex(), -1);
+
+		InvertedIndexMulti multi = new InvertedIndexMulti();
+		multi.moveAll(compact);
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), multi);
+
+		SegmentedInvertedIndex segmented = new SegmentedInvertedIndex(1_000);
+		try {
+			segmented.moveAll(compact);
+			IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), segmented);
+		} finally {
+			segmented.close();
+		}
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), compact);
+	}
+
+	/**
+	 * Tests a local index combined by addAll is left as it was, and does not
+	 * share its position sets with the index it was combined into.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testAddCopies() throws IOException {
+		InvertedIndex local = build(new InvertedIndex(), 1);
+		InvertedIndex index = new InvertedIndex();
+		index.addAll(local);
+		build(index, 0);
+		for (int d = 1; d < STEMS.size(); d += 2) {
+			index.addDocument(CORPUS.name(d), STEMS.get(d - 1));
+		}
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), 1), local);
+	}
+
+	/**
+	 * Tests local indexes moved into an {@link InvertedIndexMulti} in chunks, both
+	 * empty and holding the other half, give the whole corpus.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testMoveLocal() throws IOException {
+		InvertedIndexMulti empty = new InvertedIndexMulti();
+		empty.moveAll(build(new InvertedIndex(), -1));
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), empty);
+
+		InvertedIndexMulti half = build(new InvertedIndexMulti(), 0);
+		half.moveAll(build(new InvertedIndex(), 1));
+		IndexTestSupport.assertSameIndex(build(new InvertedIndex(), -1), half);
+	}
+
+	/**
+	 * Builds the documents of the corpus into an index.
+	 *
+	 * @param <T>    the type of index
+	 * @param index  the index to build into
+	 * @param parity 0 or 1 for the even or odd documents only, -1 for every one
+	 * @return the index
+	 */
+	private static <T extends InvertedIndex> T build(T index, int parity) {
+		for (int d = 0; d < STEMS.size(); d++) {
+			if (parity < 0 || d % 2 == parity) {
+				index.addDocument(CORPUS.name(d), STEMS.get(d));
+			}
+		}
+		return index;
+	}
+}
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Removes and adds again locations of a {@link SegmentedInvertedIndex} with
+ * sealed and merged segments, and compares it with the same changes made to an
+ * {@link InvertedIndex}.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class SegmentedInvertedIndexTest {
+
+	/** The corpus built */
+	private static final SyntheticCorpus CORPUS = IndexTestSupport.SMALL;
+
+	/** The stems of every document of the corpus */
+	private static final List<List<String>> STEMS = IndexTestSupport.stems(CORPUS);
+
+	/**
+	 * Tests removed locations are hidden from every read of the sealed segments
+	 * holding them, before and after the segments are merged, and that a location
+	 * added again is only found with its new words.
+	 *
+	 * @throws IOException if unable to write the JSON
+	 */
+	@Test
+	public void testRemoveSealed() throws IOException {
+		InvertedIndex expected = new InvertedIndex();
+		CompactInvertedIndex base = new CompactInvertedIndex();
+		for (int d = 0; d < STEMS.size() / 2; d++) {
+			expected.addDocument(CORPUS.name(d), STEMS.get(d));
+			base.addDocument(CORPUS.name(d), STEMS.get(d));
+		}
+
+		SegmentedInvertedIndex index = new SegmentedInvertedIndex(base, 2_000);
+		try {
+			for (int d = STEMS.size() / 2; d < STEMS.size(); d++) {
+				expected.addDocument(CORPUS.name(d), STEMS.get(d));
+				index.addDocument(CORPUS.name(d), STEMS.get(d));
+			}
+
+			for (int d = 0; d < STEMS.size(); d += 3) {
+				assertEquals(expected.removeLocation(CORPUS.name(d)), index.removeLocation(CORPUS.name(d)));
+			}
+			assertEquals(false, index.removeLocation(CORPUS.name(0)));
+			assertSameReads(expected, index);
+
+			for (int d = 0; d < STEMS.size(); d += 6) {
+				List<String> words = STEMS.get((d + 1) % STEMS.size());
+				expected.addDocument(CORPUS.name(d), words);
+				index.addDocument(CORPUS.name(d), words);
+			}
+			assertSameReads(expected, index);
+
+			index.flush();
+			assertSameReads(expected, index);
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Asserts two indexes find the same results for a few words and write the
+	 * same JSON.
+	 *
+	 * @param expected the expected index
+	 * @param actual   the index tested
+	 * @throws IOException if unable to write the JSON
+	 */
+	private static void assertSameReads(InvertedIndex expected, InvertedIndex actual) throws IOException {
+		assertEquals(expected.uniqueWords(), actual.uniqueWords(), "unique words");
+		for (int d = 0; d < 20; d++) {
+			String word = STEMS.get(d).get(0);
+			assertEquals(results(expected.search(Set.of(word), true)), results(actual.search(Set.of(word), true)), word);
+			assertEquals(expected.getLocationSet(word), actual.getLocationSet(word), word);
+		}
+
+		IndexTestSupport.assertSameIndex(expected, actual);
+	}
+
+	/**
+	 * Returns the locations, amounts and scores of search results.
+	 *
+	 * @param results the search results
+	 * @return a line per result
+	 */
+	private static List<String> results(List<InvertedIndex.SearchItem> results) {
+		List<String> lines = new ArrayList<String>();
+		for (InvertedIndex.SearchItem result : results) {
+			lines.add(result.getLocation() + " " + result.getAmount() + " " + result.getScore());
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server serving the HTML pages of a {@link SyntheticCorpus} as
+ * {@code /page<N>.html}, waiting a fixed latency before every response, so the
+ * web crawler can be measured without the network. The pages link to each
+ * other, so crawling from {@code /page0.html} finds most of them. Their links
+ * to other hosts are pointed at {@code /ext/}, answered with 404, so a crawl
+ * never leaves the server.
+ *
+ * Uses the HTTP server of the JDK, so no other dependency is needed to run it.
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class StandInServer implements AutoCloseable {
+
+	/** The prefix of the links of the corpus to other hosts */
+	private static final String EXTERNAL = "https://www.example.com/";
+
+	static {
+		/*
+		 * Like real servers, send small responses without waiting for the ACK of
+		 * the headers, or every reused connection stalls on delayed ACKs
+		 */
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	/** The corpus the pages are made from */
+	private final SyntheticCorpus corpus;
+
+	/** The milliseconds waited before every response */
+	private final int latency;
+
+	/** The server */
+	private final HttpServer server;
+
+	/** The threads handling the requests */
+	private final ExecutorService executor;
+
+	/** The amount of requests handled */
+	private final AtomicLong requests;
+
+	/**
+	 * Starts a server on a free port of the loopback address.
+	 *
+	 * @param corpus  the corpus the pages are made from
+	 * @param latency the milliseconds waited before every response
+	 * @throws IOException if unable to start the server
+	 */
+	public StandInServer(SyntheticCorpus corpus, int latency) throws IOException {
+		this.corpus = corpus;
+		this.latency = latency;
+		this.requests = new AtomicLong();
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		this.executor = Executors.newCachedThreadPool((runnable) -> {
+			Thread thread = new Thread(runnable, "stand-in");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Answers a request with the page asked for, or 404 if there is no such page.
+	 *
+	 * @param exchange the request and its response
+	 * @throws IOException if unable to write the response
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try (exchange) {
+			if (latency > 0) {
+				Thread.sleep(latency);
+			}
+
+			int page = page(exchange.getRequestURI().getPath());
+			if (page < 0) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			byte[] body = corpus.html(page).replace(EXTERNAL, "/ext/").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Function to find the page asked for by a request path
+	 *
+	 * @param path the request path
+	 * @return the index of the page, or -1 if there is no such page
+	 */
+	private int page(String path) {
+		if (path.startsWith("/page") && path.endsWith(".html")) {
+			try {
+				int page = Integer.parseInt(path.substring(5, path.length() - 5));
+				return page >= 0 && page < corpus.size() ? page : -1;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the URL of a page.
+	 *
+	 * @param page the index of the page
+	 * @return the URL of the page on this server
+	 * @throws MalformedURLException if unable to make the URL
+	 */
+	public URL url(int page) throws MalformedURLException {
+		InetSocketAddress address = server.getAddress();
+		return new URL("http", address.getHostString(), address.getPort(), "/page" + page + ".html");
+	}
+
+	/**
+	 * Returns the amount of requests handled.
+	 *
+	 * @return the amount of requests handled
+	 */
+	public long requests() {
+		return requests.get();
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return "StandInServer[" + server.getAddress() + ", latency=" + latency + "ms, requests=" + requests + "]";
+	}
+}
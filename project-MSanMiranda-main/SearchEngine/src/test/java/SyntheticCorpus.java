@@ -0,0 +1,253 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A reproducible corpus of made-up text for benchmarks. Words are drawn from a
+ * random vocabulary following a Zipf distribution, like words in natural
+ * language, where the word of rank k is drawn with a weight of 1 / k^s. The same
+ * seed and sizes always give the same corpus.
+ *
+ * @see Benchmark
+ *
+ * @author Michael Miranda
+ * @author University of San Francisco
+ * @version Fall 2020
+ */
+public class SyntheticCorpus {
+
+	/** The amount of words per line of a document */
+	private static final int LINE = 12;
+
+	/** The vocabulary, most frequent word first */
+	private final String[] vocabulary;
+
+	/** The cumulative weights of the vocabulary */
+	private final double[] weights;
+
+	/** The documents, as lines of text */
+	private final List<List<String>> documents;
+
+	/** The seed of the corpus */
+	private final long seed;
+
+	/**
+	 * Constructor generating the corpus.
+	 *
+	 * @param vocabulary the amount of distinct words
+	 * @param documents  the amount of documents
+	 * @param words      the amount of words per document
+	 * @param zipf       the exponent s of the Zipf distribution, 0 for uniform
+	 * @param seed       the seed of the random generator
+	 */
+	public SyntheticCorpus(int vocabulary, int documents, int words, double zipf, long seed) {
+		Random random = new Random(seed);
+		this.seed = seed;
+		this.vocabulary = new String[vocabulary];
+		this.weights = new double[vocabulary];
+
+		HashSet<String> seen = new HashSet<String>();
+		for (int i = 0; i < vocabulary; i++) {
+			String word;
+			do {
+				word = randomWord(random);
+			} while (!seen.add(word));
+			this.vocabulary[i] = word;
+			weights[i] = (i == 0 ? 0 : weights[i - 1]) + 1 / Math.pow(i + 1, zipf);
+		}
+
+		this.documents = new ArrayList<List<String>>(documents);
+		for (int d = 0; d < documents; d++) {
+			List<String> lines = new ArrayList<String>();
+			StringBuilder line = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				if (w > 0) {
+					line.append(w % LINE == 0 ? "" : " ");
+				}
+				appendWord(line, random);
+				if (w % LINE == LINE - 1) {
+					lines.add(line.toString());
+					line.setLength(0);
+				}
+			}
+			if (line.length() > 0) {
+				lines.add(line.toString());
+			}
+			this.documents.add(lines);
+		}
+	}
+
+	/**
+	 * Returns the amount of documents.
+	 *
+	 * @return the amount of documents
+	 */
+	public int size() {
+		return documents.size();
+	}
+
+	/**
+	 * Returns the lines of a document.
+	 *
+	 * @param document the index of the document
+	 * @return the lines of the document
+	 */
+	public List<String> lines(int document) {
+		return documents.get(document);
+	}
+
+	/**
+	 * Returns the text of a document.
+	 *
+	 * @param document the index of the document
+	 * @return the text of the document, one line per line
+	 */
+	public String text(int document) {
+		return String.join("\n", documents.get(document));
+	}
+
+	/**
+	 * Returns the name of a document, as used for its location.
+	 *
+	 * @param document the index of the document
+	 * @return the name of the document
+	 */
+	public String name(int document) {
+		return String.format("doc%05d.txt", document);
+	}
+
+	/**
+	 * Returns the text of a document wrapped in an HTML page, with a head, a
+	 * script, a style, comments, entities and a link every few lines, some
+	 * relative and some absolute.
+	 *
+	 * @param document the index of the document
+	 * @return the HTML page
+	 */
+	public String html(int document) {
+		Random random = new Random(seed ^ document);
+		StringBuilder html = new StringBuilder();
+		html.append("<!DOCTYPE html>\n<html>\n<head>\n<title>").append(name(document)).append("</title>\n");
+		html.append("<style>\np { margin: 0; }\n</style>\n");
+		html.append("<script type=\"text/javascript\">\nvar x = 1 < 2;\n</script>\n</head>\n<body>\n");
+		for (String line : documents.get(document)) {
+			html.append("<p>").append(line).append(" &amp; &copy;</p>\n");
+			switch (random.nextInt(4)) {
+				case 0:
+					html.append("<a href=\"page").append(random.nextInt(size())).append(".html#top\">next</a>\n");
+					break;
+				case 1:
+					html.append("<a class=\"ext\" href=\"https://www.example.com/").append(vocabulary[random.nextInt(100)])
+							.append("\">out</a>\n");
+					break;
+				case 2:
+					html.append("<!-- ").append(vocabulary[random.nextInt(100)]).append(" -->\n");
+					break;
+				default:
+					break;
+			}
+		}
+		html.append("</body>\n</html>\n");
+		return html.toString();
+	}
+
+	/**
+	 * Returns query lines of one to three words drawn like the words of the
+	 * documents, so frequent words are queried often.
+	 *
+	 * @param amount  the amount of query lines
+	 * @param partial true to cut the words to prefixes of two to five characters
+	 * @return the query lines
+	 */
+	public List<String> queries(int amount, boolean partial) {
+		Random random = new Random(seed + amount + (partial ? 1 : 0));
+		List<String> queries = new ArrayList<String>(amount);
+		for (int i = 0; i < amount; i++) {
+			int words = 1 + random.nextInt(3);
+			StringBuilder query = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				String word = draw(random);
+				if (partial) {
+					word = word.substring(0, Math.min(word.length(), 2 + random.nextInt(4)));
+				}
+				query.append(w == 0 ? "" : " ").append(word);
+			}
+			queries.add(query.toString());
+		}
+		return queries;
+	}
+
+	/**
+	 * Writes every document as a text file in a directory.
+	 *
+	 * @param directory the directory to write to, created if needed
+	 * @throws IOException if an IO error occurs
+	 */
+	public void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		for (int d = 0; d < size(); d++) {
+			try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(name(d)), StandardCharsets.UTF_8)) {
+				for (String line : documents.get(d)) {
+					writer.write(line);
+					writer.write('\n');
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws a word following the Zipf distribution.
+	 *
+	 * @param random the random generator
+	 * @return the word
+	 */
+	private String draw(Random random) {
+		double weight = random.nextDouble() * weights[weights.length - 1];
+		int i = Arrays.binarySearch(weights, weight);
+		return vocabulary[Math.min(i < 0 ? -i - 1 : i, vocabulary.length - 1)];
+	}
+
+	/**
+	 * Appends a drawn word as it would appear in text, sometimes capitalized,
+	 * followed by punctuation or with an accent, so cleaning has work to do.
+	 *
+	 * @param line   the line to append to
+	 * @param random the random generator
+	 */
+	private void appendWord(StringBuilder line, Random random) {
+		String word = draw(random);
+		int style = random.nextInt(20);
+		if (style == 0) {
+			line.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+		} else if (style == 1) {
+			line.append(word).append(',');
+		} else if (style == 2) {
+			line.append(word).append('.');
+		} else if (style == 3) {
+			line.append(word.charAt(0)).append('é').append(word, 1, word.length());
+		} else {
+			line.append(word);
+		}
+	}
+
+	/**
+	 * Returns a random lowercase word of two to twelve letters.
+	 *
+	 * @param random the random generator
+	 * @return the word
+	 */
+	private static String randomWord(Random random) {
+		char[] word = new char[2 + random.nextInt(11)];
+		for (int i = 0; i < word.length; i++) {
+			word[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(word);
+	}
+}